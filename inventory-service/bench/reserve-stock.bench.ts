@@ -0,0 +1,317 @@
+/**
+ * Benchmark de concurrencia de la reserva de stock: muchos pedidos simultáneos compitiendo
+ * por pocos productos "calientes", cada uno con sus items en orden aleatorio.
+ *
+ * Compara ProductStockService.reserveStock (un SELECT ... FOR UPDATE ordenado por productId
+ * y un UPDATE masivo) con el flujo anterior (validación con un findOne por item y luego
+ * un SELECT ... FOR UPDATE y un save por item, en el orden del pedido), con los mismos
+ * productos configurados como calientes (HotStockReservationService) y con los pedidos
+ * agrupados en lotes de BENCH_BATCH_SIZE como los recibe OrderBatchConsumer.
+ *
+ * Uso (contra una base de datos de pruebas, mismas variables DB_* que el servicio):
+ *   pnpm run bench:reserve
+ *   BENCH_ORDERS=5000 BENCH_CONCURRENCY=64 BENCH_HOT_SKUS=10 pnpm run bench:reserve
+ */
+import { randomUUID } from 'crypto';
+import { Logger } from '@nestjs/common';
+import { DataSource } from 'typeorm';
+import { ProductStock } from '../src/products/entities/product-stock.entity';
+import { HotStockEscrow } from '../src/products/entities/hot-stock-escrow.entity';
+import { OrderStockReservation } from '../src/products/entities/order-stock-reservation.entity';
+import {
+  ProductStockService,
+  StockReservation,
+} from '../src/products/product-stock.service';
+import { HotStockReservationService } from '../src/products/hot-stock-reservation.service';
+import { OrderItemEvent } from '../src/messaging/events/order-item.event';
+
+const ORDERS = parseInt(process.env.BENCH_ORDERS || '2000', 10);
+const CONCURRENCY = parseInt(process.env.BENCH_CONCURRENCY || '32', 10);
+const HOT_SKUS = parseInt(process.env.BENCH_HOT_SKUS || '20', 10);
+const ITEMS_PER_ORDER = parseInt(process.env.BENCH_ITEMS_PER_ORDER || '5', 10);
+const BATCH_SIZE = parseInt(process.env.BENCH_BATCH_SIZE || '100', 10);
+const INITIAL_STOCK = 1_000_000;
+
+type Reserve = (items: OrderItemEvent[]) => Promise<unknown>;
+
+interface Variant {
+  reserve: Reserve;
+  close?: () => Promise<void>;
+}
+
+interface Result {
+  name: string;
+  elapsedMs: number;
+  latencies: number[];
+  deadlocks: number;
+  errors: number;
+}
+
+/**
+ * El flujo anterior a la reserva masiva, copiado para poder compararlo
+ */
+async function perItemReserve(
+  dataSource: DataSource,
+  items: OrderItemEvent[],
+): Promise<void> {
+  const repository = dataSource.getRepository(ProductStock);
+  for (const item of items) {
+    const productStock = await repository.findOne({
+      where: { productId: item.productId },
+    });
+    if (!productStock || productStock.availableStock < item.quantity) {
+      return;
+    }
+  }
+
+  const queryRunner = dataSource.createQueryRunner();
+  await queryRunner.connect();
+  await queryRunner.startTransaction();
+  try {
+    for (const item of items) {
+      const productStock = await queryRunner.manager.findOne(ProductStock, {
+        where: { productId: item.productId },
+        lock: { mode: 'pessimistic_write' },
+      });
+      if (!productStock || productStock.availableStock < item.quantity) {
+        throw new Error(`Insufficient stock for product ${item.productId}`);
+      }
+      productStock.availableStock -= item.quantity;
+      productStock.reservedStock += item.quantity;
+      await queryRunner.manager.save(ProductStock, productStock);
+    }
+    await queryRunner.commitTransaction();
+  } catch (error) {
+    await queryRunner.rollbackTransaction();
+    throw error;
+  } finally {
+    await queryRunner.release();
+  }
+}
+
+/**
+ * Agrupa las reservas concurrentes en lotes para reserveStockBatch, como hace OrderBatchConsumer
+ * con los mensajes que le entrega el broker
+ */
+function batching(service: ProductStockService): Reserve {
+  let pending: {
+    items: OrderItemEvent[];
+    resolve: (reservation: StockReservation) => void;
+    reject: (error: unknown) => void;
+  }[] = [];
+
+  const flush = () => {
+    const batch = pending;
+    pending = [];
+    if (batch.length === 0) {
+      return;
+    }
+    service
+      .reserveStockBatch(
+        batch.map((order) => ({ orderId: randomUUID(), items: order.items })),
+      )
+      .then(
+        (reservations) =>
+          batch.forEach((order, index) => order.resolve(reservations[index])),
+        (error) => batch.forEach((order) => order.reject(error)),
+      );
+  };
+
+  return (items) =>
+    new Promise<StockReservation>((resolve, reject) => {
+      pending.push({ items, resolve, reject });
+      if (pending.length >= BATCH_SIZE) {
+        flush();
+      } else if (pending.length === 1) {
+        setImmediate(flush);
+      }
+    });
+}
+
+/**
+ * Pedidos con ITEMS_PER_ORDER productos distintos elegidos al azar entre los calientes
+ */
+function buildOrders(productIds: string[]): OrderItemEvent[][] {
+  const orders: OrderItemEvent[][] = [];
+  for (let i = 0; i < ORDERS; i++) {
+    const shuffled = [...productIds].sort(() => Math.random() - 0.5);
+    orders.push(
+      shuffled
+        .slice(0, Math.min(ITEMS_PER_ORDER, productIds.length))
+        .map((productId) => new OrderItemEvent(productId, 1)),
+    );
+  }
+  return orders;
+}
+
+async function run(
+  name: string,
+  reserve: Reserve,
+  orders: OrderItemEvent[][],
+): Promise<Result> {
+  const result: Result = {
+    name,
+    elapsedMs: 0,
+    latencies: [],
+    deadlocks: 0,
+    errors: 0,
+  };
+  let next = 0;
+
+  const worker = async () => {
+    while (next < orders.length) {
+      const items = orders[next++];
+      const start = performance.now();
+      try {
+        await reserve(items);
+        result.latencies.push(performance.now() - start);
+      } catch (error) {
+        // 40P01: deadlock_detected
+        if ((error as { code?: string }).code === '40P01') {
+          result.deadlocks++;
+        } else {
+          result.errors++;
+        }
+      }
+    }
+  };
+
+  const start = performance.now();
+  await Promise.all(Array.from({ length: CONCURRENCY }, worker));
+  result.elapsedMs = performance.now() - start;
+  return result;
+}
+
+function percentile(sorted: number[], p: number): string {
+  if (sorted.length === 0) {
+    return '-';
+  }
+  const index = Math.min(sorted.length - 1, Math.ceil((p / 100) * sorted.length) - 1);
+  return sorted[index].toFixed(1);
+}
+
+function report(result: Result): void {
+  const sorted = [...result.latencies].sort((a, b) => a - b);
+  const ordersPerSecond = (sorted.length / result.elapsedMs) * 1000;
+  console.log(
+    `${result.name.padEnd(10)} ${ordersPerSecond.toFixed(0).padStart(8)} pedidos/s` +
+      `  p50=${percentile(sorted, 50)}ms p95=${percentile(sorted, 95)}ms p99=${percentile(sorted, 99)}ms` +
+      `  ok=${sorted.length} deadlocks=${result.deadlocks} errores=${result.errors}`,
+  );
+}
+
+/**
+ * Comprueba que cada reserva confirmada movió exactamente una unidad por item
+ */
+async function checkStock(
+  dataSource: DataSource,
+  productIds: string[],
+  reservedItems: number,
+): Promise<void> {
+  const [totals] = await dataSource.query(
+    `SELECT sum("availableStock")::int AS available, sum("reservedStock")::int AS reserved
+     FROM products_stock WHERE "productId" = ANY($1::uuid[])`,
+    [productIds],
+  );
+  const consistent =
+    totals.reserved === reservedItems &&
+    totals.available + totals.reserved === INITIAL_STOCK * productIds.length;
+  console.log(
+    `           stock ${consistent ? 'consistente' : 'INCONSISTENTE'}: reservado=${totals.reserved}, esperado=${reservedItems}`,
+  );
+}
+
+async function main(): Promise<void> {
+  Logger.overrideLogger(false);
+
+  const dataSource = new DataSource({
+    type: 'postgres',
+    host: process.env.DB_HOST || 'localhost',
+    port: parseInt(process.env.DB_PORT || '5433', 10),
+    username: process.env.DB_USERNAME || 'admin',
+    password: process.env.DB_PASSWORD || 'password123',
+    database: process.env.DB_DATABASE || 'inventory_db',
+    entities: [ProductStock, HotStockEscrow, OrderStockReservation],
+    synchronize: process.env.NODE_ENV !== 'production',
+    extra: { max: CONCURRENCY },
+  });
+  await dataSource.initialize();
+
+  // HotStockReservationService lee HOT_SKU_IDS al construirse
+  const stockService = async (
+    hotSkuIds: string[],
+    batched = false,
+  ): Promise<Variant> => {
+    process.env.HOT_SKU_IDS = hotSkuIds.join(',');
+    const hotStock = new HotStockReservationService(dataSource);
+    await hotStock.onModuleInit();
+    const service = new ProductStockService(
+      dataSource.getRepository(ProductStock),
+      dataSource,
+      hotStock,
+    );
+    return {
+      reserve: batched
+        ? batching(service)
+        : (items) => service.reserveStock(randomUUID(), items),
+      close: () => hotStock.onApplicationShutdown(),
+    };
+  };
+  const variants: [string, (productIds: string[]) => Promise<Variant>][] = [
+    [
+      'per-item',
+      () =>
+        Promise.resolve({
+          reserve: (items) => perItemReserve(dataSource, items),
+        }),
+    ],
+    ['bulk', () => stockService([])],
+    ['hot', (productIds) => stockService(productIds)],
+    ['batch', () => stockService([], true)],
+  ];
+
+  console.log(
+    `${ORDERS} pedidos, ${CONCURRENCY} concurrentes, ${ITEMS_PER_ORDER} items sobre ${HOT_SKUS} productos calientes`,
+  );
+  for (const [name, createVariant] of variants) {
+    const productIds = Array.from({ length: HOT_SKUS }, () => randomUUID());
+    await dataSource.query(
+      `INSERT INTO products_stock ("productId", "availableStock", "reservedStock")
+       SELECT unnest($1::uuid[]), $2, 0`,
+      [productIds, INITIAL_STOCK],
+    );
+    try {
+      const orders = buildOrders(productIds);
+      const variant = await createVariant(productIds);
+      const result = await run(name, variant.reserve, orders);
+      // En modo caliente vuelca las reservas y devuelve el escrow antes de comprobar el stock
+      await variant.close?.();
+      report(result);
+      await checkStock(
+        dataSource,
+        productIds,
+        result.latencies.length * Math.min(ITEMS_PER_ORDER, HOT_SKUS),
+      );
+    } finally {
+      await dataSource.query(
+        `DELETE FROM products_stock WHERE "productId" = ANY($1::uuid[])`,
+        [productIds],
+      );
+      await dataSource.query(
+        `DELETE FROM hot_stock_escrow WHERE "productId" = ANY($1::uuid[])`,
+        [productIds],
+      );
+      await dataSource.query(
+        `DELETE FROM order_stock_reservations WHERE "productId" = ANY($1::uuid[])`,
+        [productIds],
+      );
+    }
+  }
+
+  await dataSource.destroy();
+}
+
+main().catch((error) => {
+  console.error(error);
+  process.exit(1);
+});
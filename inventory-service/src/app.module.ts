@@ -5,6 +5,8 @@ import { AppService } from './app.service';
 import { RabbitmqModule } from './rabbitmq/rabbitmq.module';
 import { ProductsModule } from './products/products.module';
 import { ProductStock } from './products/entities/product-stock.entity';
+import { HotStockEscrow } from './products/entities/hot-stock-escrow.entity';
+import { OrderStockReservation } from './products/entities/order-stock-reservation.entity';
 
 @Module({
   imports: [
@@ -15,7 +17,7 @@ import { ProductStock } from './products/entities/product-stock.entity';
       username: process.env.DB_USERNAME || 'admin',
       password: process.env.DB_PASSWORD || 'password123',
       database: process.env.DB_DATABASE || 'inventory_db',
-      entities: [ProductStock],
+      entities: [ProductStock, HotStockEscrow, OrderStockReservation],
       synchronize: process.env.NODE_ENV !== 'production', // Solo en desarrollo
       logging: process.env.NODE_ENV === 'development',
     }),
@@ -13,6 +13,9 @@ async function bootstrap() {
   // Configurar CORS
   app.enableCors();
 
+  // Al parar, vuelca las reservas en memoria y devuelve el escrow de los productos calientes
+  app.enableShutdownHooks();
+
   // Configurar validación global
   app.useGlobalPipes(
     new ValidationPipe({
@@ -72,6 +75,8 @@ async function bootstrap() {
                 'ORDER_CREATED': 'order.created',
                 'STOCK_RESERVED': 'stock.reserved',
                 'STOCK_REJECTED': 'stock.rejected',
+                'STOCK_COMMIT': 'order.stock.commit',
+                'STOCK_RELEASE': 'order.stock.release',
               };
 
               const pattern = eventTypeMap[messageContent.eventType] || 'order.created';
@@ -121,6 +126,8 @@ async function bootstrap() {
                 'order.created': 'order.created',
                 'stock.reserved': 'stock.reserved',
                 'stock.rejected': 'stock.rejected',
+                'order.stock.commit': 'order.stock.commit',
+                'order.stock.release': 'order.stock.release',
               };
               const pattern = patternMap[routingKey] || routingKey;
 
@@ -156,9 +163,15 @@ async function bootstrap() {
     },
   });
 
-  // Iniciar todos los microservicios conectados
-  await app.startAllMicroservices();
-  logger.log('Microservicio RabbitMQ iniciado y escuchando eventos');
+  // Con ORDER_BATCH_SIZE > 1, OrderBatchConsumer consume order.queue por lotes en lugar del listener
+  const orderBatchSize = parseInt(process.env.ORDER_BATCH_SIZE || '1', 10);
+  if (orderBatchSize > 1) {
+    logger.log(`order.queue se consume en lotes de ${orderBatchSize} mensajes`);
+  } else {
+    // Iniciar todos los microservicios conectados
+    await app.startAllMicroservices();
+    logger.log('Microservicio RabbitMQ iniciado y escuchando eventos');
+  }
 
   // Iniciar servidor HTTP
   const port = process.env.PORT || 3001;
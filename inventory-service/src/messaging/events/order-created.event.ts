@@ -1,11 +1,12 @@
 import { OrderItemEvent } from './order-item.event';
+import { ShippingAddressEvent } from './shipping-address.event';
 
 export class OrderCreatedEvent {
   orderId: string;
   customerId: string;
   eventType: string;
   items: OrderItemEvent[];
-  shippingAddressJson?: string;
+  shippingAddress?: ShippingAddressEvent;
   timestamp?: number;
   correlationId?: string;
   createdAt?: string;
@@ -16,7 +17,7 @@ export class OrderCreatedEvent {
     items: OrderItemEvent[],
     correlationId?: string,
     createdAt?: string,
-    shippingAddressJson?: string,
+    shippingAddress?: ShippingAddressEvent,
     timestamp?: number,
   ) {
     this.orderId = orderId;
@@ -25,7 +26,7 @@ export class OrderCreatedEvent {
     this.items = items;
     this.correlationId = correlationId || orderId;
     this.createdAt = createdAt;
-    this.shippingAddressJson = shippingAddressJson;
+    this.shippingAddress = shippingAddress;
     this.timestamp = timestamp;
   }
 }
@@ -0,0 +1,7 @@
+export class ShippingAddressEvent {
+  street: string;
+  city: string;
+  state: string;
+  zipCode: string;
+  country: string;
+}
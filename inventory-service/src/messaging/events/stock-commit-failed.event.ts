@@ -0,0 +1,19 @@
+/**
+ * Respuesta a un STOCK_COMMIT cuya reserva venció antes de llegar y ya no hay stock para volver a
+ * tomarla: Order Service cancela el pedido confirmado
+ */
+export class StockCommitFailedEvent {
+  eventType: string;
+  orderId: string;
+  correlationId: string;
+  reason: string;
+  timestamp: number;
+
+  constructor(orderId: string, reason: string) {
+    this.eventType = 'STOCK_COMMIT_FAILED'; // Must match Spring Boot EventType enum value
+    this.orderId = orderId;
+    this.correlationId = orderId;
+    this.reason = reason;
+    this.timestamp = Date.now(); // timestamp in milliseconds to match Spring Boot
+  }
+}
@@ -0,0 +1,15 @@
+/**
+ * Cierre de las reservas de un pedido que publica Spring Boot: STOCK_COMMIT cuando el pedido se
+ * confirma y STOCK_RELEASE cuando se cancela después de reservar
+ */
+export class StockSettlementEvent {
+  orderId: string;
+  eventType: string; // Must match Spring Boot EventType enum value
+  timestamp?: number;
+
+  constructor(orderId: string, eventType: string, timestamp?: number) {
+    this.orderId = orderId;
+    this.eventType = eventType;
+    this.timestamp = timestamp;
+  }
+}
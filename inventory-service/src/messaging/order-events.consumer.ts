@@ -4,6 +4,8 @@ import { ProductStockService } from '../products/product-stock.service';
 import { OrderCreatedEvent } from './events/order-created.event';
 import { StockReservedEvent } from './events/stock-reserved.event';
 import { StockRejectedEvent } from './events/stock-rejected.event';
+import { StockSettlementEvent } from './events/stock-settlement.event';
+import { StockCommitFailedEvent } from './events/stock-commit-failed.event';
 import { RabbitMQService } from '../rabbitmq/rabbitmq.service';
 
 @Controller()
@@ -33,28 +35,28 @@ export class OrderEventsConsumer {
     this.logger.log(`Evento OrderCreated recibido: OrderId=${data.orderId}`);
 
     try {
-      // 1. Validar disponibilidad de stock
-      const validation =
-        await this.productStockService.validateStockAvailability(data.items);
+      // 1. Validar y reservar el stock de todos los items en una sola transacción
+      const reservation = await this.productStockService.reserveStock(
+        data.orderId,
+        data.items,
+      );
 
-      if (!validation.isAvailable) {
+      if (!reservation.isReserved) {
         // 2a. Si no hay stock, publicar StockRejected
         this.logger.warn(
-          `Stock insuficiente para orden ${data.orderId}: ${validation.reason}`,
+          `Stock insuficiente para orden ${data.orderId}: ${reservation.reason}`,
         );
 
         const rejectedEvent = new StockRejectedEvent(
           data.orderId,
           data.correlationId || data.orderId,
-          validation.reason || 'Stock not available',
+          reservation.reason || 'Stock not available',
         );
 
         await this.rabbitMQService.publishStockRejected(rejectedEvent);
         this.logger.log(`StockRejected publicado para orden ${data.orderId}`);
       } else {
-        // 2b. Si hay stock, reservar y publicar StockReserved
-        await this.productStockService.reserveStock(data.items);
-
+        // 2b. Stock reservado, publicar StockReserved
         const reservedEvent = new StockReservedEvent(
           data.orderId,
           data.correlationId || data.orderId,
@@ -96,4 +98,64 @@ export class OrderEventsConsumer {
       channel.ack(originalMsg);
     }
   }
+
+  @EventPattern('order.stock.commit')
+  async handleStockCommit(
+    @Payload() data: StockSettlementEvent,
+    @Ctx() context: RmqContext,
+  ): Promise<void> {
+    await this.settle(data, context, 'confirmadas', async (orderIds) => {
+      const { committed, failed } =
+        await this.productStockService.commitReservations(orderIds);
+      // Antes del ACK: si el rechazo no llega al broker el commit se reintenta
+      await this.rabbitMQService.publishStockResponses(
+        failed.map((f) => new StockCommitFailedEvent(f.orderId, f.reason)),
+      );
+      return committed;
+    });
+  }
+
+  @EventPattern('order.stock.release')
+  async handleStockRelease(
+    @Payload() data: StockSettlementEvent,
+    @Ctx() context: RmqContext,
+  ): Promise<void> {
+    await this.settle(data, context, 'liberadas', (orderIds) =>
+      this.productStockService.releaseReservations(orderIds),
+    );
+  }
+
+  /**
+   * Cerrar las reservas es idempotente, así que ante un error el mensaje se devuelve a la cola:
+   * perderlo dejaría el stock retenido hasta que la reserva venza
+   */
+  private async settle(
+    data: StockSettlementEvent,
+    context: RmqContext,
+    action: string,
+    settle: (orderIds: string[]) => Promise<number>,
+  ): Promise<void> {
+    const channel = context.getChannelRef();
+    const originalMsg = context.getMessage();
+
+    if (!data || !data.orderId) {
+      this.logger.warn('Mensaje recibido sin datos válidos o sin orderId');
+      channel.ack(originalMsg);
+      return;
+    }
+
+    try {
+      const settled = await settle([data.orderId]);
+      this.logger.log(
+        `${settled} reservas ${action} para orden ${data.orderId}`,
+      );
+      channel.ack(originalMsg);
+    } catch (error) {
+      this.logger.error(
+        `Error al procesar ${data.eventType} para orden ${data.orderId}:`,
+        error,
+      );
+      channel.nack(originalMsg, false, true);
+    }
+  }
 }
@@ -0,0 +1,21 @@
+import { Entity, Column, PrimaryColumn } from 'typeorm';
+
+/**
+ * Stock de un producto caliente que una instancia retiró de products_stock para reservarlo en memoria
+ */
+@Entity('hot_stock_escrow')
+export class HotStockEscrow {
+  @PrimaryColumn({ type: 'varchar', length: 100 })
+  instanceId: string;
+
+  @PrimaryColumn('uuid')
+  productId: string;
+
+  // Unidades retiradas de availableStock que aún no se han volcado a reservedStock
+  @Column({ type: 'int', default: 0 })
+  escrow: number;
+
+  // Última entrada del journal de la instancia ya aplicada en la base de datos
+  @Column({ type: 'bigint', default: 0 })
+  lastSeq: string;
+}
@@ -0,0 +1,45 @@
+import {
+  Entity,
+  Column,
+  PrimaryColumn,
+  CreateDateColumn,
+  Index,
+} from 'typeorm';
+
+export type OrderStockReservationStatus = 'RESERVED' | 'COMMITTED' | 'RELEASED';
+
+/**
+ * Unidades de un producto reservadas para un pedido. Mientras está RESERVED cuentan en
+ * reservedStock; el pedido confirmado las pasa a COMMITTED y uno cancelado, o una reserva que
+ * vence sin respuesta, a RELEASED devolviéndolas a availableStock.
+ */
+@Entity('order_stock_reservations')
+// Solo las reservas abiertas: el barrido de vencidas no recorre las ya cerradas
+@Index('idx_order_stock_reservations_expires', ['expiresAt'], {
+  where: `"status" = 'RESERVED'`,
+})
+@Index('idx_order_stock_reservations_settled', ['settledAt'], {
+  where: `"status" <> 'RESERVED'`,
+})
+export class OrderStockReservation {
+  @PrimaryColumn('uuid')
+  orderId: string;
+
+  @PrimaryColumn('uuid')
+  productId: string;
+
+  @Column({ type: 'int' })
+  quantity: number;
+
+  @Column({ type: 'varchar', length: 10, default: 'RESERVED' })
+  status: OrderStockReservationStatus;
+
+  @Column({ type: 'timestamptz' })
+  expiresAt: Date;
+
+  @Column({ type: 'timestamptz', nullable: true })
+  settledAt: Date | null;
+
+  @CreateDateColumn({ type: 'timestamptz' })
+  createdAt: Date;
+}
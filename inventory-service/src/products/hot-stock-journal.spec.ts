@@ -0,0 +1,85 @@
+import { promises as fs } from 'fs';
+import { tmpdir } from 'os';
+import { join } from 'path';
+import { HotStockJournal } from './hot-stock-journal';
+
+describe('HotStockJournal', () => {
+  let directory: string;
+
+  beforeEach(async () => {
+    directory = await fs.mkdtemp(join(tmpdir(), 'hot-stock-journal-'));
+  });
+
+  afterEach(async () => {
+    await fs.rm(directory, { recursive: true, force: true });
+  });
+
+  it('ignora una última línea incompleta tras un crash', async () => {
+    await fs.writeFile(
+      join(directory, 'test-0000000000000001.log'),
+      '{"seq":1,"orderId":"a","deltas":[["p",2]]}\n' +
+        '{"seq":2,"orderId":"b","deltas":[["p",1]]}\n' +
+        '{"seq":3,"orderId":"c","del',
+    );
+
+    const entries = await new HotStockJournal(directory, 'test').open();
+
+    expect(entries.map((entry) => entry.seq)).toEqual([1, 2]);
+  });
+
+  it('solo lee los segmentos de su instancia', async () => {
+    await fs.writeFile(
+      join(directory, 'other-0000000000000001.log'),
+      '{"seq":1,"orderId":"a","deltas":[["p",2]]}\n',
+    );
+
+    expect(await new HotStockJournal(directory, 'test').open()).toEqual([]);
+  });
+
+  it('recupera al reabrir las entradas escritas', async () => {
+    const journal = new HotStockJournal(directory, 'test');
+    await journal.open();
+    await journal.rotate(1);
+    await Promise.all([
+      journal.append({ seq: 1, orderId: 'a', deltas: [['p', 2]] }),
+      journal.append({ seq: 2, orderId: 'a', deltas: [['p', -2]] }),
+    ]);
+    await journal.close();
+
+    const entries = await new HotStockJournal(directory, 'test').open();
+
+    expect(entries).toEqual([
+      { seq: 1, orderId: 'a', deltas: [['p', 2]] },
+      { seq: 2, orderId: 'a', deltas: [['p', -2]] },
+    ]);
+  });
+
+  it('no borra el segmento en uso al rotar dos veces al mismo seq', async () => {
+    const journal = new HotStockJournal(directory, 'test');
+    await journal.open();
+    await journal.rotate(1);
+    // Un volcado que no encontró entradas nuevas desde la rotación anterior
+    await journal.rotate(1);
+    await journal.truncate(0);
+    await journal.append({ seq: 1, orderId: 'a', deltas: [['p', 2]] });
+    await journal.close();
+
+    const entries = await new HotStockJournal(directory, 'test').open();
+
+    expect(entries.map((entry) => entry.seq)).toEqual([1]);
+  });
+
+  it('borra los segmentos cerrados ya aplicados y conserva el actual', async () => {
+    const journal = new HotStockJournal(directory, 'test');
+    await journal.open();
+    await journal.rotate(1);
+    await journal.append({ seq: 1, orderId: 'a', deltas: [['p', 2]] });
+    await journal.rotate(2);
+    await journal.append({ seq: 2, orderId: 'b', deltas: [['p', 1]] });
+
+    await journal.truncate(2);
+    await journal.close();
+
+    expect(await fs.readdir(directory)).toEqual(['test-0000000000000002.log']);
+  });
+});
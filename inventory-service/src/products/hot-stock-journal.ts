@@ -0,0 +1,132 @@
+import { promises as fs } from 'fs';
+import { join } from 'path';
+
+/**
+ * Una reserva (cantidades positivas) o liberación (negativas) de productos calientes
+ */
+export interface HotStockJournalEntry {
+  seq: number;
+  // Pedido al que pertenece; falta en las entradas escritas antes de registrar reservas por pedido
+  orderId?: string;
+  deltas: [string, number][];
+}
+
+interface Segment {
+  path: string;
+  maxSeq: number;
+}
+
+/**
+ * Journal append-only de las reservas en memoria de HotStockReservationService.
+ * Las entradas se agrupan y se escriben con un solo fsync por lote (group commit), y se guardan en
+ * segmentos que se borran cuando el volcado a la base de datos ya cubre todas sus entradas.
+ */
+export class HotStockJournal {
+  private readonly segments: Segment[] = [];
+  private current?: { handle: fs.FileHandle; segment: Segment };
+  private buffer: HotStockJournalEntry[] = [];
+  private pendingWrite?: Promise<void>;
+  private tail: Promise<unknown> = Promise.resolve();
+
+  constructor(
+    private readonly directory: string,
+    private readonly instanceId: string,
+  ) {}
+
+  /**
+   * Lee las entradas de los segmentos existentes, ignorando una última línea incompleta tras un crash
+   */
+  async open(): Promise<HotStockJournalEntry[]> {
+    await fs.mkdir(this.directory, { recursive: true });
+    const prefix = `${this.instanceId}-`;
+    const files = (await fs.readdir(this.directory))
+      .filter((file) => file.startsWith(prefix) && file.endsWith('.log'))
+      .sort();
+
+    const entries: HotStockJournalEntry[] = [];
+    for (const file of files) {
+      const path = join(this.directory, file);
+      let maxSeq = 0;
+      for (const line of (await fs.readFile(path, 'utf8')).split('\n')) {
+        try {
+          const entry = JSON.parse(line) as HotStockJournalEntry;
+          entries.push(entry);
+          maxSeq = Math.max(maxSeq, entry.seq);
+        } catch {
+          // Línea vacía o escritura interrumpida
+        }
+      }
+      this.segments.push({ path, maxSeq });
+    }
+    return entries;
+  }
+
+  /**
+   * Añade una entrada; la promesa se resuelve cuando está en disco
+   */
+  append(entry: HotStockJournalEntry): Promise<void> {
+    this.buffer.push(entry);
+    if (!this.pendingWrite) {
+      const write = this.tail.then(() => this.writeBuffered());
+      this.pendingWrite = write;
+      this.tail = write.catch(() => undefined);
+    }
+    return this.pendingWrite;
+  }
+
+  /**
+   * Cierra el segmento actual y abre uno nuevo que empieza en nextSeq
+   */
+  rotate(nextSeq: number): Promise<void> {
+    const rotation = this.tail.then(async () => {
+      const path = join(
+        this.directory,
+        `${this.instanceId}-${String(nextSeq).padStart(16, '0')}.log`,
+      );
+      // Sin entradas desde la última rotación: reabrirlo lo registraría dos veces y truncate()
+      // borraría el segmento en uso
+      if (this.current?.segment.path === path) {
+        return;
+      }
+      await this.current?.handle.close();
+      const segment = { path, maxSeq: 0 };
+      this.current = { handle: await fs.open(segment.path, 'a'), segment };
+      this.segments.push(segment);
+    });
+    this.tail = rotation.catch(() => undefined);
+    return rotation;
+  }
+
+  /**
+   * Borra los segmentos cerrados cuyas entradas ya están aplicadas en la base de datos
+   */
+  async truncate(appliedSeq: number): Promise<void> {
+    for (const segment of [...this.segments]) {
+      if (segment !== this.current?.segment && segment.maxSeq <= appliedSeq) {
+        await fs.rm(segment.path, { force: true });
+        this.segments.splice(this.segments.indexOf(segment), 1);
+      }
+    }
+  }
+
+  async close(): Promise<void> {
+    await this.tail;
+    await this.current?.handle.close();
+    this.current = undefined;
+  }
+
+  private async writeBuffered(): Promise<void> {
+    const entries = this.buffer;
+    this.buffer = [];
+    this.pendingWrite = undefined;
+    if (!this.current) {
+      throw new Error('El journal de stock caliente no está abierto');
+    }
+
+    await this.current.handle.write(
+      entries.map((entry) => JSON.stringify(entry) + '\n').join(''),
+    );
+    await this.current.handle.datasync();
+    this.current.segment.maxSeq = entries[entries.length - 1].seq;
+  }
+}
@@ -0,0 +1,239 @@
+import { promises as fs } from 'fs';
+import { tmpdir } from 'os';
+import { join } from 'path';
+import { DataSource } from 'typeorm';
+import { HotStockReservationService } from './hot-stock-reservation.service';
+
+const INSTANCE_ID = 'test-instance';
+const PRODUCT_ID = 'a3c2b1d0-6b0e-4f2b-9c1a-2d3f4a5b6c7d';
+const ORDER_A = '0b8f3c2e-1a4d-4e5f-9a6b-7c8d9e0f1a2b';
+const ORDER_B = '1c9a4d3f-2b5e-4f6a-8b7c-8d9e0f1a2b3c';
+const ORDER_C = '2d0b5e4a-3c6f-4a7b-9c8d-9e0f1a2b3c4d';
+
+interface EscrowRow {
+  productId: string;
+  escrow: number;
+  lastSeq: string;
+}
+
+describe('HotStockReservationService', () => {
+  const env = { ...process.env };
+  let directory: string;
+  let escrowRows: EscrowRow[];
+  let refillAmount: number;
+  let insertedReservations: (params: unknown[]) => unknown[];
+  let manager: { query: jest.Mock };
+  let dataSource: { query: jest.Mock; transaction: jest.Mock };
+  let service: HotStockReservationService;
+
+  beforeEach(async () => {
+    directory = await fs.mkdtemp(join(tmpdir(), 'hot-stock-'));
+    process.env.HOT_SKU_IDS = PRODUCT_ID;
+    process.env.HOT_SKU_JOURNAL_DIR = directory;
+    process.env.INSTANCE_ID = INSTANCE_ID;
+    process.env.HOT_SKU_ESCROW_CHUNK = '10';
+    // Los volcados se lanzan a mano desde cada prueba
+    process.env.HOT_SKU_FLUSH_MS = '3600000';
+
+    escrowRows = [];
+    refillAmount = 10;
+    // Por defecto todas las reservas se escriben: ninguna es repetida
+    insertedReservations = ([orderIds, productIds]) =>
+      (orderIds as string[]).map((orderId, i) => ({
+        orderId,
+        productId: (productIds as string[])[i],
+      }));
+    manager = {
+      query: jest.fn((sql: string, params: unknown[] = []) => {
+        if (sql.includes('WITH taken AS')) {
+          return Promise.resolve([{ amount: refillAmount }]);
+        }
+        if (sql.includes('INSERT INTO order_stock_reservations')) {
+          return Promise.resolve(insertedReservations(params));
+        }
+        return Promise.resolve([]);
+      }),
+    };
+    dataSource = {
+      query: jest.fn(() => Promise.resolve(escrowRows)),
+      transaction: jest.fn(
+        (work: (entityManager: typeof manager) => Promise<unknown>) =>
+          work(manager),
+      ),
+    };
+    service = new HotStockReservationService(
+      dataSource as unknown as DataSource,
+    );
+  });
+
+  afterEach(async () => {
+    await service.onApplicationShutdown();
+    await fs.rm(directory, { recursive: true, force: true });
+    process.env = { ...env };
+  });
+
+  const stock = () => service['stocks'].get(PRODUCT_ID)!;
+
+  const reserve = async (orderId: string, quantity: number) => {
+    const result = await service.reserve(
+      orderId,
+      new Map([[PRODUCT_ID, quantity]]),
+    );
+    await result.durable;
+    return result;
+  };
+
+  // Parámetros de la última llamada cuya SQL contiene el fragmento
+  const lastParams = (fragment: string) =>
+    manager.query.mock.calls
+      .filter(([sql]) => (sql as string).includes(fragment))
+      .map(([, params]) => params as unknown[])
+      .pop();
+
+  const writeJournal = (lines: object[]) =>
+    fs.writeFile(
+      join(directory, `${INSTANCE_ID}-0000000000000001.log`),
+      lines.map((line) => JSON.stringify(line) + '\n').join(''),
+    );
+
+  describe('recuperación', () => {
+    it('reaplica solo las entradas del journal posteriores a lastSeq', async () => {
+      escrowRows = [{ productId: PRODUCT_ID, escrow: 10, lastSeq: '2' }];
+      await writeJournal([
+        { seq: 1, orderId: ORDER_A, deltas: [[PRODUCT_ID, 2]] },
+        { seq: 2, orderId: ORDER_B, deltas: [[PRODUCT_ID, 2]] },
+        { seq: 3, orderId: ORDER_C, deltas: [[PRODUCT_ID, 2]] },
+      ]);
+
+      await service.onModuleInit();
+
+      // El escrow de la base de datos ya descuenta las dos primeras
+      expect(stock().available).toBe(8);
+      expect(stock().pending).toBe(0);
+      expect(lastParams('INSERT INTO order_stock_reservations')![0]).toEqual([
+        ORDER_C,
+      ]);
+      expect(lastParams('"reservedStock" = p."reservedStock"')).toEqual([
+        [PRODUCT_ID],
+        [2],
+      ]);
+      expect(lastParams('"lastSeq" = $2')).toEqual([INSTANCE_ID, 3]);
+      expect(service.hasUnflushed(ORDER_C)).toBe(false);
+    });
+
+    it('retoma seq de la base de datos cuando el journal está vacío', async () => {
+      escrowRows = [{ productId: PRODUCT_ID, escrow: 10, lastSeq: '41' }];
+
+      await service.onModuleInit();
+
+      expect(dataSource.transaction).not.toHaveBeenCalled();
+      expect(stock().available).toBe(10);
+
+      await reserve(ORDER_A, 1);
+      await service.flush();
+
+      // La nueva entrada no reutiliza un seq ya volcado
+      expect(lastParams('"lastSeq" = $2')).toEqual([INSTANCE_ID, 42]);
+    });
+  });
+
+  describe('volcado', () => {
+    beforeEach(async () => {
+      await service.onModuleInit();
+    });
+
+    it('un volcado fallido devuelve sus entradas al principio y conserva pending', async () => {
+      await reserve(ORDER_A, 2);
+      let failFlush!: (error: Error) => void;
+      dataSource.transaction.mockImplementationOnce(
+        () =>
+          new Promise((_, reject) => {
+            failFlush = reject;
+          }),
+      );
+
+      const flushing = service.flush();
+      // Llega mientras el volcado está en curso; su escritura en el journal va tras la rotación
+      await reserve(ORDER_B, 3);
+      failFlush(new Error('database unavailable'));
+
+      await expect(flushing).rejects.toThrow('database unavailable');
+      expect(service['unflushed'].map((entry) => entry.orderId)).toEqual([
+        ORDER_A,
+        ORDER_B,
+      ]);
+      expect(stock().pending).toBe(5);
+      expect(service.hasUnflushed(ORDER_A)).toBe(true);
+
+      await service.flush();
+
+      expect(lastParams('INSERT INTO order_stock_reservations')![0]).toEqual([
+        ORDER_A,
+        ORDER_B,
+      ]);
+      expect(lastParams('"reservedStock" = p."reservedStock"')).toEqual([
+        [PRODUCT_ID],
+        [5],
+      ]);
+      expect(stock().pending).toBe(0);
+      expect(service['unflushed']).toEqual([]);
+    });
+
+    it('deja en el escrow las unidades de una reserva repetida', async () => {
+      await reserve(ORDER_A, 2);
+      expect(stock().available).toBe(8);
+      // El pedido ya retenía stock para el producto: la fila no se escribe
+      insertedReservations = () => [];
+
+      await service.flush();
+
+      expect(lastParams('"reservedStock" = p."reservedStock"')).toEqual([
+        [PRODUCT_ID],
+        [0],
+      ]);
+      expect(lastParams('SET "escrow" = e."escrow" - d.delta')).toEqual([
+        INSTANCE_ID,
+        [PRODUCT_ID],
+        [0],
+      ]);
+      expect(stock().available).toBe(10);
+      expect(stock().pending).toBe(0);
+      expect(service.hasUnflushed(ORDER_A)).toBe(false);
+    });
+  });
+
+  describe('reserva', () => {
+    it('rechaza cuando el escrow llega a 0 y la recarga no retira nada', async () => {
+      escrowRows = [{ productId: PRODUCT_ID, escrow: 2, lastSeq: '0' }];
+      refillAmount = 0;
+      await service.onModuleInit();
+
+      expect((await reserve(ORDER_A, 2)).isReserved).toBe(true);
+      // La reserva deja el escrow bajo mínimos y lanza una recarga en segundo plano
+      await stock().refill;
+      const result = await reserve(ORDER_B, 1);
+
+      expect(stock().available).toBe(0);
+      expect(result.isReserved).toBe(false);
+      expect(result.reason).toContain('Insufficient stock for product');
+      // Tras una recarga vacía se rechaza desde memoria, sin volver a la base de datos
+      expect(
+        manager.query.mock.calls.filter(([sql]) =>
+          (sql as string).includes('WITH taken AS'),
+        ),
+      ).toHaveLength(1);
+    });
+
+    it('no reserva dos veces un pedido con una reserva sin volcar', async () => {
+      escrowRows = [{ productId: PRODUCT_ID, escrow: 10, lastSeq: '0' }];
+      await service.onModuleInit();
+
+      await reserve(ORDER_A, 2);
+      const repeated = await reserve(ORDER_A, 2);
+
+      expect(repeated).toEqual({ isReserved: true, duplicate: true });
+      expect(stock().available).toBe(8);
+      expect(stock().pending).toBe(2);
+    });
+  });
+});
@@ -0,0 +1,566 @@
+import {
+  Injectable,
+  Logger,
+  OnApplicationShutdown,
+  OnModuleInit,
+} from '@nestjs/common';
+import { DataSource, EntityManager } from 'typeorm';
+import { hostname } from 'os';
+import { HotStockJournal, HotStockJournalEntry } from './hot-stock-journal';
+
+// Tras una recarga vacía no se vuelve a consultar la base de datos durante este tiempo
+const DRAINED_RETRY_MS = 1000;
+
+interface HotStock {
+  // Unidades en escrow todavía sin reservar
+  available: number;
+  // Unidades reservadas en memoria que aún no se han volcado a reservedStock
+  pending: number;
+  refill?: Promise<void>;
+  drainedUntil: number;
+}
+
+/**
+ * Reserva en memoria para los productos calientes configurados en HOT_SKU_IDS.
+ *
+ * Cada instancia retira bloques de stock (HOT_SKU_ESCROW_CHUNK unidades) de products_stock a su
+ * fila de hot_stock_escrow y decide las reservas contra esos contadores sin tocar la base de
+ * datos. Como el stock retirado deja de estar en availableStock, ni otra instancia ni el flujo
+ * normal pueden venderlo: nunca se reserva más de lo que hay.
+ *
+ * Cada reserva se escribe en un journal local antes de confirmarse, y cada HOT_SKU_FLUSH_MS las
+ * reservas acumuladas se vuelcan a reservedStock en una sola transacción, junto con sus filas en
+ * order_stock_reservations. Al arrancar se reaplican las entradas del journal posteriores al último
+ * volcado, y al parar se devuelve el escrow sobrante.
+ */
+@Injectable()
+export class HotStockReservationService
+  implements OnModuleInit, OnApplicationShutdown
+{
+  private readonly logger = new Logger(HotStockReservationService.name);
+  private readonly instanceId = (process.env.INSTANCE_ID || hostname()).replace(
+    /[^\w.-]/g,
+    '_',
+  );
+  private readonly flushIntervalMs = parseInt(
+    process.env.HOT_SKU_FLUSH_MS || '200',
+    10,
+  );
+  private readonly escrowChunk = parseInt(
+    process.env.HOT_SKU_ESCROW_CHUNK || '500',
+    10,
+  );
+  private readonly reservationTtlMs = parseInt(
+    process.env.STOCK_RESERVATION_TTL_MS || '1800000',
+    10,
+  );
+  private readonly journal = new HotStockJournal(
+    process.env.HOT_SKU_JOURNAL_DIR || './data/hot-stock-journal',
+    this.instanceId,
+  );
+  private readonly stocks = new Map<string, HotStock>();
+  // Entradas del journal aún sin fila en order_stock_reservations; por pedido, cuántas tiene y
+  // cuántas reservas le quedan descontando sus liberaciones
+  private unflushed: HotStockJournalEntry[] = [];
+  private readonly unflushedOrders = new Map<
+    string,
+    { entries: number; reserved: number }
+  >();
+  private seq = 0;
+  private flushedSeq = 0;
+  private ready: Promise<void> = Promise.resolve();
+  private flushTimer?: NodeJS.Timeout;
+  private flushing?: Promise<void>;
+
+  constructor(private readonly dataSource: DataSource) {
+    for (const productId of (process.env.HOT_SKU_IDS || '').split(',')) {
+      if (productId.trim()) {
+        this.stocks.set(productId.trim().toLowerCase(), {
+          available: 0,
+          pending: 0,
+          drainedUntil: 0,
+        });
+      }
+    }
+  }
+
+  async onModuleInit(): Promise<void> {
+    if (this.stocks.size === 0) {
+      return;
+    }
+
+    // Los mensajes que lleguen antes de terminar la recuperación esperan a que acabe
+    this.ready = this.recover();
+    await this.ready;
+    this.flushTimer = setInterval(() => {
+      this.flush().catch((error) =>
+        this.logger.error('Error al volcar las reservas en memoria', error),
+      );
+    }, this.flushIntervalMs);
+    this.logger.log(
+      `Reserva en memoria activa para ${this.stocks.size} productos (instancia ${this.instanceId})`,
+    );
+  }
+
+  async onApplicationShutdown(): Promise<void> {
+    if (this.stocks.size === 0) {
+      return;
+    }
+
+    clearInterval(this.flushTimer);
+    // Un volcado en curso puede no incluir las últimas reservas
+    while (this.flushedSeq !== this.seq) {
+      await this.flush();
+    }
+    await this.returnEscrow();
+    await this.journal.close();
+  }
+
+  isHot(productId: string): boolean {
+    return this.stocks.has(productId);
+  }
+
+  /**
+   * Reserva las cantidades si todos los productos tienen escrow suficiente. Solo va a la base de
+   * datos cuando un producto se queda sin escrow; la promesa durable se resuelve cuando la
+   * reserva está en el journal. Si el pedido ya tiene una reserva sin volcar no se reserva de
+   * nuevo y se marca como duplicate.
+   */
+  async reserve(
+    orderId: string,
+    quantities: Map<string, number>,
+  ): Promise<{
+    isReserved: boolean;
+    reason?: string;
+    duplicate?: boolean;
+    durable?: Promise<void>;
+  }> {
+    await this.ready;
+    const refilled = new Set<string>();
+    for (;;) {
+      let shortage: string | undefined;
+      for (const [productId, quantity] of quantities) {
+        if (this.stocks.get(productId)!.available < quantity) {
+          shortage = productId;
+          break;
+        }
+      }
+
+      if (!shortage) {
+        // Otra entrega del mismo pedido reservó mientras esta esperaba
+        if (this.hasUnflushed(orderId)) {
+          return { isReserved: true, duplicate: true };
+        }
+        return {
+          isReserved: true,
+          durable: this.apply(orderId, quantities, 1),
+        };
+      }
+
+      const stock = this.stocks.get(shortage)!;
+      if (refilled.has(shortage) || stock.drainedUntil > Date.now()) {
+        return {
+          isReserved: false,
+          reason: `Insufficient stock for product ${shortage}. Available: ${stock.available}, Requested: ${quantities.get(shortage)}`,
+        };
+      }
+      // Si ya había una recarga en curso puede haber retirado menos de lo necesario
+      const joined = stock.refill !== undefined;
+      await this.refill(shortage, quantities.get(shortage)! - stock.available);
+      if (!joined) {
+        refilled.add(shortage);
+      }
+    }
+  }
+
+  /**
+   * Deshace una reserva cuya parte en la base de datos no se pudo completar
+   */
+  release(orderId: string, quantities: Map<string, number>): void {
+    // Si la liberación no llega al journal, un crash solo puede dejar stock reservado de más
+    this.apply(orderId, quantities, -1).catch((error) =>
+      this.logger.error('Error al escribir una liberación en el journal', error),
+    );
+  }
+
+  /**
+   * Indica si el pedido tiene reservas en memoria, no liberadas, cuya fila aún no está en la base
+   * de datos
+   */
+  hasUnflushed(orderId: string): boolean {
+    return (this.unflushedOrders.get(orderId)?.reserved ?? 0) > 0;
+  }
+
+  private apply(
+    orderId: string,
+    quantities: Map<string, number>,
+    sign: 1 | -1,
+  ): Promise<void> {
+    const deltas: [string, number][] = [];
+    for (const [productId, quantity] of quantities) {
+      const stock = this.stocks.get(productId)!;
+      stock.available -= sign * quantity;
+      stock.pending += sign * quantity;
+      deltas.push([productId, sign * quantity]);
+    }
+
+    const entry = { seq: ++this.seq, orderId, deltas };
+    this.track(entry);
+    const durable = this.journal.append(entry);
+    if (sign === 1) {
+      this.refillInBackground(quantities);
+    }
+    return durable;
+  }
+
+  private track(entry: HotStockJournalEntry): void {
+    if (entry.orderId) {
+      this.unflushed.push(entry);
+      this.countUnflushed(entry, 1);
+    }
+  }
+
+  private countUnflushed(entry: HotStockJournalEntry, sign: 1 | -1): void {
+    const counts = this.unflushedOrders.get(entry.orderId!) ?? {
+      entries: 0,
+      reserved: 0,
+    };
+    counts.entries += sign;
+    // Todas las cantidades de una entrada tienen el mismo signo
+    counts.reserved += sign * Math.sign(entry.deltas[0]?.[1] ?? 0);
+    if (counts.entries === 0) {
+      this.unflushedOrders.delete(entry.orderId!);
+    } else {
+      this.unflushedOrders.set(entry.orderId!, counts);
+    }
+  }
+
+  /**
+   * Recarga por adelantado los productos con menos de un cuarto de bloque en escrow
+   */
+  private refillInBackground(quantities: Map<string, number>): void {
+    for (const productId of quantities.keys()) {
+      const stock = this.stocks.get(productId)!;
+      if (
+        stock.available < this.escrowChunk / 4 &&
+        stock.drainedUntil <= Date.now()
+      ) {
+        this.refill(productId, 0).catch((error) =>
+          this.logger.error(
+            `Error al retirar escrow para producto ${productId}`,
+            error,
+          ),
+        );
+      }
+    }
+  }
+
+  /**
+   * Retira de availableStock al menos needed unidades (un bloque de escrow como mínimo).
+   * Las recargas de un mismo producto se encadenan para no retirar dos bloques a la vez.
+   */
+  private refill(productId: string, needed: number): Promise<void> {
+    const stock = this.stocks.get(productId)!;
+    if (stock.refill) {
+      return stock.refill;
+    }
+
+    stock.refill = this.dataSource
+      .transaction(async (manager) => {
+        const [taken] = await manager.query(
+          `WITH taken AS (
+             SELECT "productId", LEAST("availableStock", $2) AS amount
+             FROM products_stock WHERE "productId" = $1 FOR UPDATE
+           )
+           UPDATE products_stock AS p
+           SET "availableStock" = p."availableStock" - t.amount, "updatedAt" = now()
+           FROM taken t WHERE p."productId" = t."productId"
+           RETURNING t.amount`,
+          [productId, Math.max(this.escrowChunk, needed)],
+        );
+        const amount: number = taken?.amount ?? 0;
+        if (amount > 0) {
+          await manager.query(
+            `INSERT INTO hot_stock_escrow ("instanceId", "productId", "escrow", "lastSeq")
+             VALUES ($1, $2, $3, $4)
+             ON CONFLICT ("instanceId", "productId")
+             DO UPDATE SET "escrow" = hot_stock_escrow."escrow" + EXCLUDED."escrow"`,
+            [this.instanceId, productId, amount, this.flushedSeq],
+          );
+        }
+        return amount;
+      })
+      .then((amount) => {
+        stock.available += amount;
+        // Sin stock en products_stock: se rechaza desde memoria hasta el próximo intento
+        stock.drainedUntil = amount > 0 ? 0 : Date.now() + DRAINED_RETRY_MS;
+      })
+      .finally(() => {
+        stock.refill = undefined;
+      });
+    return stock.refill;
+  }
+
+  /**
+   * Vuelca las reservas en memoria de los pedidos indicados, para poder confirmarlas o liberarlas
+   * en la base de datos. Un volcado ya en curso puede no incluirlas, por eso se repite.
+   */
+  async flushOrders(orderIds: string[]): Promise<void> {
+    await this.ready;
+    while (orderIds.some((orderId) => this.unflushedOrders.has(orderId))) {
+      await this.flush();
+    }
+  }
+
+  /**
+   * Vuelca a reservedStock las reservas en memoria ya escritas en el journal, en una transacción
+   * que también marca hasta qué entrada del journal está aplicado
+   */
+  flush(): Promise<void> {
+    if (!this.flushing) {
+      this.flushing = this.flushPending().finally(() => {
+        this.flushing = undefined;
+      });
+    }
+    return this.flushing;
+  }
+
+  private async flushPending(): Promise<void> {
+    const seq = this.seq;
+    if (seq === this.flushedSeq) {
+      return;
+    }
+    const pending = new Map<string, number>();
+    for (const [productId, stock] of this.stocks) {
+      if (stock.pending !== 0) {
+        pending.set(productId, stock.pending);
+      }
+    }
+    const entries = this.unflushed;
+    this.unflushed = [];
+    let duplicates = new Map<string, number>();
+
+    try {
+      // Las entradas hasta seq deben estar en disco antes de aplicarlas
+      await this.journal.rotate(seq + 1);
+      await this.dataSource.transaction(async (manager) => {
+        // Antes de bloquear products_stock, en el mismo orden que el barrido de reservas vencidas
+        duplicates = await this.writeReservations(manager, entries);
+        // Las reservas duplicadas no pasan a reservedStock: sus unidades se quedan en el escrow
+        const productIds = [
+          ...new Set([...pending.keys(), ...duplicates.keys()]),
+        ].sort();
+        const deltas = productIds.map(
+          (productId) =>
+            (pending.get(productId) ?? 0) - (duplicates.get(productId) ?? 0),
+        );
+        await manager.query(
+          `SELECT 1 FROM products_stock WHERE "productId" = ANY($1::uuid[])
+           ORDER BY "productId" FOR UPDATE`,
+          [productIds],
+        );
+        await manager.query(
+          `UPDATE products_stock AS p
+           SET "reservedStock" = p."reservedStock" + d.delta, "updatedAt" = now()
+           FROM unnest($1::uuid[], $2::int[]) AS d("productId", delta)
+           WHERE p."productId" = d."productId"`,
+          [productIds, deltas],
+        );
+        await manager.query(
+          `UPDATE hot_stock_escrow AS e
+           SET "escrow" = e."escrow" - d.delta
+           FROM unnest($2::uuid[], $3::int[]) AS d("productId", delta)
+           WHERE e."instanceId" = $1 AND e."productId" = d."productId"`,
+          [this.instanceId, productIds, deltas],
+        );
+        await manager.query(
+          `UPDATE hot_stock_escrow SET "lastSeq" = $2 WHERE "instanceId" = $1`,
+          [this.instanceId, seq],
+        );
+      });
+    } catch (error) {
+      // Se vuelven a intentar en el próximo volcado, por delante de las posteriores
+      this.unflushed = entries.concat(this.unflushed);
+      throw error;
+    }
+
+    for (const [productId, delta] of pending) {
+      this.stocks.get(productId)!.pending -= delta;
+    }
+    for (const [productId, quantity] of duplicates) {
+      this.stocks.get(productId)!.available += quantity;
+    }
+    for (const entry of entries) {
+      this.countUnflushed(entry, -1);
+    }
+    this.flushedSeq = seq;
+    await this.journal.truncate(seq);
+  }
+
+  /**
+   * Registra las reservas de cada pedido en order_stock_reservations. Si un pedido se liberó tras
+   * un volcado anterior su fila pasa a RELEASED; el stock vuelve al escrow con los contadores.
+   * Una reserva liberada antes (cancelada o vencida) se reabre. Si el pedido ya retiene stock para
+   * el producto, la reserva es de una entrega repetida que otra instancia, o esta antes de volcar,
+   * ya atendió: no se escribe, y se devuelven sus unidades por producto para dejarlas en el escrow.
+   */
+  private async writeReservations(
+    manager: EntityManager,
+    entries: HotStockJournalEntry[],
+  ): Promise<Map<string, number>> {
+    const net = new Map<
+      string,
+      { orderId: string; productId: string; quantity: number }
+    >();
+    for (const entry of entries) {
+      for (const [productId, delta] of entry.deltas) {
+        const key = `${entry.orderId}:${productId}`;
+        const reservation = net.get(key) ?? {
+          orderId: entry.orderId!,
+          productId,
+          quantity: 0,
+        };
+        reservation.quantity += delta;
+        net.set(key, reservation);
+      }
+    }
+    const reserved = [...net.values()].filter((r) => r.quantity > 0);
+    const released = [...net.values()].filter((r) => r.quantity < 0);
+    const duplicates = new Map<string, number>();
+
+    if (reserved.length > 0) {
+      const written: { orderId: string; productId: string }[] =
+        await manager.query(
+          `INSERT INTO order_stock_reservations ("orderId", "productId", "quantity", "expiresAt")
+           SELECT r."orderId", r."productId", r.quantity, now() + $4 * interval '1 millisecond'
+           FROM unnest($1::uuid[], $2::uuid[], $3::int[]) AS r("orderId", "productId", quantity)
+           ON CONFLICT ("orderId", "productId") DO UPDATE
+           SET "quantity" = EXCLUDED."quantity", "status" = 'RESERVED',
+               "expiresAt" = EXCLUDED."expiresAt", "settledAt" = NULL
+           WHERE order_stock_reservations."status" = 'RELEASED'
+           RETURNING "orderId", "productId"`,
+          [
+            reserved.map((r) => r.orderId),
+            reserved.map((r) => r.productId),
+            reserved.map((r) => r.quantity),
+            this.reservationTtlMs,
+          ],
+        );
+      for (const row of written) {
+        net.delete(`${row.orderId}:${row.productId}`);
+      }
+      for (const r of reserved) {
+        if (net.has(`${r.orderId}:${r.productId}`)) {
+          duplicates.set(
+            r.productId,
+            (duplicates.get(r.productId) ?? 0) + r.quantity,
+          );
+        }
+      }
+      if (duplicates.size > 0) {
+        this.logger.warn(
+          `Descartadas reservas repetidas de pedidos que ya retenían stock: ${[...duplicates.keys()].join(', ')}`,
+        );
+      }
+    }
+    if (released.length > 0) {
+      await manager.query(
+        `UPDATE order_stock_reservations AS s
+         SET "status" = 'RELEASED', "settledAt" = now()
+         FROM unnest($1::uuid[], $2::uuid[]) AS r("orderId", "productId")
+         WHERE s."orderId" = r."orderId" AND s."productId" = r."productId"
+           AND s."status" = 'RESERVED'`,
+        [released.map((r) => r.orderId), released.map((r) => r.productId)],
+      );
+    }
+    return duplicates;
+  }
+
+  /**
+   * Reconstruye los contadores desde hot_stock_escrow y las entradas del journal aún no volcadas
+   */
+  private async recover(): Promise<void> {
+    const rows: { productId: string; escrow: number; lastSeq: string }[] =
+      await this.dataSource.query(
+        `SELECT "productId", "escrow", "lastSeq" FROM hot_stock_escrow WHERE "instanceId" = $1`,
+        [this.instanceId],
+      );
+    const lastSeqs = new Map<string, number>();
+    for (const row of rows) {
+      lastSeqs.set(row.productId, Number(row.lastSeq));
+      this.seq = Math.max(this.seq, Number(row.lastSeq));
+      const stock = this.stocks.get(row.productId);
+      if (stock) {
+        stock.available = row.escrow;
+      } else if (row.escrow > 0) {
+        this.logger.warn(
+          `El producto ${row.productId} ya no está en HOT_SKU_IDS y conserva ${row.escrow} unidades en escrow`,
+        );
+      }
+    }
+
+    let replayed = 0;
+    const entries = await this.journal.open();
+    for (const entry of entries) {
+      this.seq = Math.max(this.seq, entry.seq);
+      for (const [productId, delta] of entry.deltas) {
+        const stock = this.stocks.get(productId);
+        if (stock && entry.seq > (lastSeqs.get(productId) ?? 0)) {
+          stock.available -= delta;
+          stock.pending += delta;
+          replayed++;
+        }
+      }
+    }
+    this.flushedSeq = Math.min(this.seq, ...lastSeqs.values());
+    for (const entry of entries) {
+      if (entry.seq > this.flushedSeq) {
+        this.track(entry);
+      }
+    }
+    await this.journal.rotate(this.seq + 1);
+
+    if (replayed > 0 || this.unflushed.length > 0) {
+      this.logger.log(`Reaplicadas ${replayed} reservas del journal`);
+      await this.flushPending();
+    }
+  }
+
+  /**
+   * Devuelve a availableStock las unidades en escrow que no llegaron a reservarse
+   */
+  private async returnEscrow(): Promise<void> {
+    const productIds = [...this.stocks.keys()]
+      .filter((productId) => this.stocks.get(productId)!.available > 0)
+      .sort();
+    if (productIds.length === 0) {
+      return;
+    }
+    const amounts = productIds.map(
+      (productId) => this.stocks.get(productId)!.available,
+    );
+
+    await this.dataSource.transaction(async (manager) => {
+      await manager.query(
+        `UPDATE products_stock AS p
+         SET "availableStock" = p."availableStock" + r.amount, "updatedAt" = now()
+         FROM unnest($1::uuid[], $2::int[]) AS r("productId", amount)
+         WHERE p."productId" = r."productId"`,
+        [productIds, amounts],
+      );
+      await manager.query(
+        `UPDATE hot_stock_escrow AS e
+         SET "escrow" = e."escrow" - r.amount
+         FROM unnest($2::uuid[], $3::int[]) AS r("productId", amount)
+         WHERE e."instanceId" = $1 AND e."productId" = r."productId"`,
+        [this.instanceId, productIds, amounts],
+      );
+    });
+    for (const productId of productIds) {
+      this.stocks.get(productId)!.available = 0;
+    }
+    this.logger.log(
+      `Escrow devuelto a products_stock para ${productIds.length} productos`,
+    );
+  }
+}
@@ -5,20 +5,51 @@ import {
   Logger,
 } from '@nestjs/common';
 import { InjectRepository } from '@nestjs/typeorm';
-import { Repository, DataSource } from 'typeorm';
+import { Repository, DataSource, EntityManager } from 'typeorm';
 import { ProductStock } from './entities/product-stock.entity';
 import { CreateProductStockDto } from './dto/create-product-stock.dto';
 import { ProductStockResponseDto } from './dto/product-stock-response.dto';
 import { OrderItemEvent } from '../messaging/events/order-item.event';
+import { HotStockReservationService } from './hot-stock-reservation.service';
+import { OrderStockReservationStatus } from './entities/order-stock-reservation.entity';
+import { OrderCreatedEvent } from '../messaging/events/order-created.event';
+
+export interface StockReservation {
+  isReserved: boolean;
+  reason?: string;
+}
+
+export interface StockCommit {
+  // Reservas confirmadas
+  committed: number;
+  // Pedidos cuya reserva venció antes del commit y ya no tienen stock para volver a tomarla
+  failed: { orderId: string; reason: string }[];
+}
+
+// Unidades de un producto en las reservas cerradas por una misma consulta
+interface SettledStock {
+  productId: string;
+  quantity: number;
+  reservations: number;
+}
+
+// Las reservas se buscan por orderId; un id que no es un uuid no puede tener reservas
+const UUID_PATTERN =
+  /^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$/;
 
 @Injectable()
 export class ProductStockService {
   private readonly logger = new Logger(ProductStockService.name);
+  private readonly reservationTtlMs = parseInt(
+    process.env.STOCK_RESERVATION_TTL_MS || '1800000',
+    10,
+  );
 
   constructor(
     @InjectRepository(ProductStock)
     private readonly productStockRepository: Repository<ProductStock>,
     private readonly dataSource: DataSource,
+    private readonly hotStockReservationService: HotStockReservationService,
   ) {}
 
   /**
@@ -67,74 +98,301 @@ export class ProductStockService {
   }
 
   /**
-   * Valida si hay stock disponible para todos los items de un pedido
+   * Reserva el stock de todos los items de un pedido en una sola transacción.
+   * Las filas se bloquean con una única consulta ordenada por productId, de modo que dos
+   * pedidos que comparten productos siempre las bloquean en el mismo orden y no pueden
+   * producir un deadlock; la reserva se aplica con un único UPDATE.
+   * Si falta un producto o no alcanza el stock no se modifica nada y se devuelve el motivo.
+   * Los productos calientes (HOT_SKU_IDS) se reservan en memoria con HotStockReservationService.
+   *
+   * Cada reserva queda registrada por pedido en order_stock_reservations y vence tras
+   * STOCK_RESERVATION_TTL_MS; un pedido cuyo stock sigue retenido o ya se confirmó (mensaje
+   * repetido) no se reserva de nuevo, y uno cuya reserva se liberó vuelve a reservarse.
    */
-  async validateStockAvailability(
+  async reserveStock(
+    orderId: string,
     items: OrderItemEvent[],
-  ): Promise<{ isAvailable: boolean; reason?: string }> {
-    for (const item of items) {
-      const productStock = await this.productStockRepository.findOne({
-        where: { productId: item.productId },
-      });
-
-      if (!productStock) {
-        return {
-          isAvailable: false,
-          reason: `Product ${item.productId} not found in inventory`,
-        };
-      }
+  ): Promise<StockReservation> {
+    return this.reserveOrder(orderId.toLowerCase(), items);
+  }
 
-      if (productStock.availableStock < item.quantity) {
-        return {
-          isAvailable: false,
-          reason: `Insufficient stock for product ${item.productId}. Available: ${productStock.availableStock}, Requested: ${item.quantity}`,
-        };
+  private async reserveOrder(
+    orderId: string,
+    items: OrderItemEvent[],
+  ): Promise<StockReservation> {
+    const quantities = this.sumQuantities(items);
+
+    const hot = new Map<string, number>();
+    for (const [productId, quantity] of quantities) {
+      if (this.hotStockReservationService.isHot(productId)) {
+        hot.set(productId, quantity);
+        quantities.delete(productId);
       }
     }
+    if (hot.size === 0) {
+      const [reservation] = await this.reserveInDatabase([
+        { orderId, quantities },
+      ]);
+      return reservation;
+    }
 
-    return { isAvailable: true };
+    // Los productos calientes no bloquean products_stock: si dos entregas del mismo pedido pasan
+    // a la vez esta comprobación, reserve detecta la segunda mientras la primera no se haya volcado,
+    // y si no, el volcado de la segunda choca con la fila de la primera y la descarta
+    if (await this.hasHeldReservations(orderId)) {
+      this.logger.log(`El pedido ${orderId} ya tiene stock reservado`);
+      return { isReserved: true };
+    }
+    const reservation = await this.hotStockReservationService.reserve(
+      orderId,
+      hot,
+    );
+    if (!reservation.isReserved) {
+      return { isReserved: false, reason: reservation.reason };
+    }
+    if (reservation.duplicate) {
+      this.logger.log(`El pedido ${orderId} ya tiene stock reservado`);
+      return { isReserved: true };
+    }
+
+    try {
+      // La reserva en memoria solo cuenta una vez escrita en el journal
+      await reservation.durable;
+      const [result] =
+        quantities.size > 0
+          ? await this.reserveInDatabase([{ orderId, quantities }])
+          : [{ isReserved: true }];
+      if (!result.isReserved) {
+        this.hotStockReservationService.release(orderId, hot);
+      }
+      return result;
+    } catch (error) {
+      this.hotStockReservationService.release(orderId, hot);
+      throw error;
+    }
   }
 
   /**
-   * Reserva el stock para los items de un pedido (dentro de una transacción)
+   * Reserva el stock de un lote de pedidos en una sola transacción, con un resultado por pedido:
+   * los pedidos se evalúan en orden contra el stock bloqueado y un pedido sin stock se rechaza
+   * sin afectar a los demás. Los pedidos con productos calientes se reservan uno a uno con
+   * reserveStock. Si la transacción del lote falla se reintenta cada pedido por separado.
    */
-  async reserveStock(items: OrderItemEvent[]): Promise<void> {
-    const queryRunner = this.dataSource.createQueryRunner();
-    await queryRunner.connect();
-    await queryRunner.startTransaction();
+  async reserveStockBatch(
+    orders: Pick<OrderCreatedEvent, 'orderId' | 'items'>[],
+  ): Promise<StockReservation[]> {
+    const reservations: StockReservation[] = new Array(orders.length);
+    const batched: {
+      index: number;
+      orderId: string;
+      quantities: Map<string, number>;
+    }[] = [];
+    // Un pedido repetido dentro del lote recibe el resultado de su primera aparición
+    const firstIndex = new Map<string, number>();
+    const duplicates: [number, number][] = [];
 
-    try {
-      for (const item of items) {
-        const productStock = await queryRunner.manager.findOne(ProductStock, {
-          where: { productId: item.productId },
-          lock: { mode: 'pessimistic_write' }, // Lock para evitar race conditions
-        });
+    for (const [index, order] of orders.entries()) {
+      const orderId = order.orderId.toLowerCase();
+      const quantities = this.sumQuantities(order.items);
+      if (firstIndex.has(orderId)) {
+        duplicates.push([index, firstIndex.get(orderId)!]);
+        continue;
+      }
+      firstIndex.set(orderId, index);
+      if (
+        [...quantities.keys()].some((productId) =>
+          this.hotStockReservationService.isHot(productId),
+        )
+      ) {
+        reservations[index] = await this.reserveOrFail(() =>
+          this.reserveOrder(orderId, order.items),
+        );
+      } else {
+        batched.push({ index, orderId, quantities });
+      }
+    }
 
-        if (!productStock) {
-          throw new NotFoundException(
-            `Product ${item.productId} not found in inventory`,
-          );
+    if (batched.length > 0) {
+      try {
+        const results = await this.reserveInDatabase(batched);
+        batched.forEach((order, i) => {
+          reservations[order.index] = results[i];
+        });
+      } catch {
+        for (const order of batched) {
+          reservations[order.index] = await this.reserveOrFail(async () => {
+            const [reservation] = await this.reserveInDatabase([order]);
+            return reservation;
+          });
         }
+      }
+    }
 
-        if (productStock.availableStock < item.quantity) {
-          throw new BadRequestException(
-            `Insufficient stock for product ${item.productId}`,
-          );
-        }
+    for (const [index, first] of duplicates) {
+      reservations[index] = reservations[first];
+    }
+    return reservations;
+  }
+
+  private async reserveOrFail(
+    reserve: () => Promise<StockReservation>,
+  ): Promise<StockReservation> {
+    try {
+      return await reserve();
+    } catch (error) {
+      const errorMessage =
+        error instanceof Error ? error.message : 'Unknown error';
+      return { isReserved: false, reason: `Internal error: ${errorMessage}` };
+    }
+  }
+
+  /**
+   * Un mismo producto puede venir en varias líneas del pedido; Postgres devuelve los uuid en minúsculas
+   */
+  private sumQuantities(items: OrderItemEvent[]): Map<string, number> {
+    const quantities = new Map<string, number>();
+    for (const item of items) {
+      const productId = item.productId.toLowerCase();
+      quantities.set(
+        productId,
+        (quantities.get(productId) ?? 0) + item.quantity,
+      );
+    }
+    return quantities;
+  }
+
+  /**
+   * Indica si el pedido tiene stock retenido o confirmado, incluidas las reservas de productos
+   * calientes aún en memoria. Una reserva liberada (cancelada o vencida) ya no retiene nada.
+   */
+  private async hasHeldReservations(orderId: string): Promise<boolean> {
+    if (this.hotStockReservationService.hasUnflushed(orderId)) {
+      return true;
+    }
+    if (!UUID_PATTERN.test(orderId)) {
+      return false;
+    }
+    const rows: unknown[] = await this.dataSource.query(
+      `SELECT 1 FROM order_stock_reservations
+       WHERE "orderId" = $1 AND "status" IN ('RESERVED', 'COMMITTED')
+       LIMIT 1`,
+      [orderId],
+    );
+    return rows.length > 0;
+  }
 
-        // Decrementar el stock disponible y aumentar el reservado
-        productStock.availableStock -= item.quantity;
-        productStock.reservedStock += item.quantity;
+  private async reserveInDatabase(
+    orders: { orderId: string; quantities: Map<string, number> }[],
+  ): Promise<StockReservation[]> {
+    const productIds = [
+      ...new Set(orders.flatMap((order) => [...order.quantities.keys()])),
+    ];
 
-        await queryRunner.manager.save(ProductStock, productStock);
+    const queryRunner = this.dataSource.createQueryRunner();
+    await queryRunner.connect();
+    await queryRunner.startTransaction();
 
-        this.logger.log(
-          `Stock reservado para producto ${item.productId}: ${item.quantity} unidades`,
+    try {
+      const locked: { productId: string; availableStock: number }[] =
+        await queryRunner.query(
+          `SELECT "productId", "availableStock" FROM products_stock
+           WHERE "productId" = ANY($1::uuid[])
+           ORDER BY "productId"
+           FOR UPDATE`,
+          [productIds],
+        );
+      const availableStock = new Map(
+        locked.map((row) => [row.productId, row.availableStock]),
+      );
+      // Con los productos bloqueados, otra entrega del mismo pedido ya terminó o espera detrás.
+      // Solo cuentan las filas de los productos que se reservan aquí: las de productos calientes
+      // pueden ser de esta misma entrega
+      const held: { orderId: string; productId: string }[] =
+        await queryRunner.query(
+          `SELECT "orderId", "productId" FROM order_stock_reservations
+           WHERE "orderId" = ANY($1::uuid[]) AND "productId" = ANY($2::uuid[])
+             AND "status" IN ('RESERVED', 'COMMITTED')`,
+          [
+            orders
+              .map((order) => order.orderId)
+              .filter((orderId) => UUID_PATTERN.test(orderId)),
+            productIds,
+          ],
         );
+      const quantitiesByOrder = new Map(
+        orders.map((order) => [order.orderId, order.quantities]),
+      );
+      const heldOrders = new Set(
+        held
+          .filter((row) =>
+            quantitiesByOrder.get(row.orderId)?.has(row.productId),
+          )
+          .map((row) => row.orderId),
+      );
+
+      // Cada pedido aceptado descuenta su stock antes de evaluar el siguiente
+      const reserved = new Map<string, number>();
+      const lines: { orderId: string; productId: string; quantity: number }[] =
+        [];
+      const reservations = orders.map(
+        ({ orderId, quantities }): StockReservation => {
+          if (heldOrders.has(orderId)) {
+            this.logger.log(`El pedido ${orderId} ya tiene stock reservado`);
+            return { isReserved: true };
+          }
+          const reason = this.findShortage(quantities, availableStock);
+          if (reason) {
+            return { isReserved: false, reason };
+          }
+          for (const [productId, quantity] of quantities) {
+            availableStock.set(
+              productId,
+              availableStock.get(productId)! - quantity,
+            );
+            reserved.set(productId, (reserved.get(productId) ?? 0) + quantity);
+            lines.push({ orderId, productId, quantity });
+          }
+          return { isReserved: true };
+        },
+      );
+
+      if (reserved.size === 0) {
+        await queryRunner.rollbackTransaction();
+        return reservations;
       }
 
+      // Decrementar el stock disponible y aumentar el reservado de todos los productos a la vez
+      const reservedIds = [...reserved.keys()];
+      await queryRunner.query(
+        `UPDATE products_stock AS p
+         SET "availableStock" = p."availableStock" - r.quantity,
+             "reservedStock" = p."reservedStock" + r.quantity,
+             "updatedAt" = now()
+         FROM unnest($1::uuid[], $2::int[]) AS r("productId", quantity)
+         WHERE p."productId" = r."productId"`,
+        [reservedIds, reservedIds.map((productId) => reserved.get(productId))],
+      );
+      await queryRunner.query(
+        `INSERT INTO order_stock_reservations ("orderId", "productId", "quantity", "expiresAt")
+         SELECT r."orderId", r."productId", r.quantity, now() + $4 * interval '1 millisecond'
+         FROM unnest($1::uuid[], $2::uuid[], $3::int[]) AS r("orderId", "productId", quantity)
+         ON CONFLICT ("orderId", "productId") DO UPDATE
+         SET "quantity" = EXCLUDED."quantity", "status" = 'RESERVED',
+             "expiresAt" = EXCLUDED."expiresAt", "settledAt" = NULL
+         WHERE order_stock_reservations."status" = 'RELEASED'`,
+        [
+          lines.map((line) => line.orderId),
+          lines.map((line) => line.productId),
+          lines.map((line) => line.quantity),
+          this.reservationTtlMs,
+        ],
+      );
+
       await queryRunner.commitTransaction();
-      this.logger.log('Stock reservado exitosamente para todos los items');
+      this.logger.log(
+        `Stock reservado exitosamente para ${reservedIds.length} productos`,
+      );
+      return reservations;
     } catch (error) {
       await queryRunner.rollbackTransaction();
       this.logger.error('Error al reservar stock, rollback ejecutado', error);
@@ -144,6 +402,286 @@ export class ProductStockService {
     }
   }
 
+  /**
+   * Devuelve el motivo del rechazo para el primer producto inexistente o sin stock suficiente
+   */
+  private findShortage(
+    quantities: Map<string, number>,
+    availableStock: Map<string, number>,
+  ): string | undefined {
+    for (const [productId, quantity] of quantities) {
+      const available = availableStock.get(productId);
+
+      if (available === undefined) {
+        return `Product ${productId} not found in inventory`;
+      }
+
+      if (available < quantity) {
+        return `Insufficient stock for product ${productId}. Available: ${available}, Requested: ${quantity}`;
+      }
+    }
+    return undefined;
+  }
+
+  /**
+   * Confirma las reservas de pedidos confirmados: sus unidades salen de reservedStock.
+   * Si la reserva de un pedido venció y se liberó antes de llegar el commit, sus unidades vuelven a
+   * tomarse de availableStock con los productos bloqueados en el mismo orden que al reservar; si
+   * ya no alcanzan, el pedido se devuelve en failed sin tocar ninguna de sus reservas, para que
+   * Order Service lo cancele. Las reservas ya confirmadas no se tocan.
+   */
+  async commitReservations(orderIds: string[]): Promise<StockCommit> {
+    const ids = this.settlementIds(orderIds);
+    if (ids.length === 0) {
+      return { committed: 0, failed: [] };
+    }
+    // Las reservas de productos calientes deben tener su fila antes de cerrarlas
+    await this.hotStockReservationService.flushOrders(ids);
+
+    return this.dataSource.transaction(async (manager) => {
+      const lines: {
+        orderId: string;
+        productId: string;
+        quantity: number;
+        status: OrderStockReservationStatus;
+      }[] = await manager.query(
+        `SELECT "orderId", "productId", "quantity", "status"
+         FROM order_stock_reservations
+         WHERE "orderId" = ANY($1::uuid[]) AND "status" IN ('RESERVED', 'RELEASED')
+         ORDER BY "orderId", "productId"
+         FOR UPDATE`,
+        [ids],
+      );
+      if (lines.length === 0) {
+        return { committed: 0, failed: [] };
+      }
+
+      const productIds = [...new Set(lines.map((line) => line.productId))];
+      const locked: { productId: string; availableStock: number }[] =
+        await manager.query(
+          `SELECT "productId", "availableStock" FROM products_stock
+           WHERE "productId" = ANY($1::uuid[])
+           ORDER BY "productId"
+           FOR UPDATE`,
+          [productIds],
+        );
+      const availableStock = new Map(
+        locked.map((row) => [row.productId, row.availableStock]),
+      );
+
+      const released = new Map<string, Map<string, number>>();
+      for (const line of lines) {
+        if (line.status === 'RELEASED') {
+          const quantities =
+            released.get(line.orderId) ?? new Map<string, number>();
+          quantities.set(line.productId, line.quantity);
+          released.set(line.orderId, quantities);
+        }
+      }
+      const failed: { orderId: string; reason: string }[] = [];
+      for (const [orderId, quantities] of released) {
+        const reason = this.findShortage(quantities, availableStock);
+        if (reason) {
+          failed.push({ orderId, reason });
+          continue;
+        }
+        for (const [productId, quantity] of quantities) {
+          availableStock.set(
+            productId,
+            availableStock.get(productId)! - quantity,
+          );
+        }
+      }
+
+      const failedIds = new Set(failed.map((f) => f.orderId));
+      const committed = lines.filter((line) => !failedIds.has(line.orderId));
+      // Las reservas abiertas salen de reservedStock y las que se vuelven a tomar de availableStock
+      const fromReserved = new Map<string, number>();
+      const fromAvailable = new Map<string, number>();
+      for (const line of committed) {
+        const from = line.status === 'RESERVED' ? fromReserved : fromAvailable;
+        from.set(
+          line.productId,
+          (from.get(line.productId) ?? 0) + line.quantity,
+        );
+      }
+
+      if (committed.length > 0) {
+        await manager.query(
+          `UPDATE order_stock_reservations AS s
+           SET "status" = 'COMMITTED', "settledAt" = now()
+           FROM unnest($1::uuid[], $2::uuid[]) AS c("orderId", "productId")
+           WHERE s."orderId" = c."orderId" AND s."productId" = c."productId"`,
+          [
+            committed.map((line) => line.orderId),
+            committed.map((line) => line.productId),
+          ],
+        );
+        const changed = productIds.filter(
+          (productId) =>
+            fromReserved.has(productId) || fromAvailable.has(productId),
+        );
+        await manager.query(
+          `UPDATE products_stock AS p
+           SET "availableStock" = p."availableStock" - c.available,
+               "reservedStock" = p."reservedStock" - c.reserved,
+               "updatedAt" = now()
+           FROM unnest($1::uuid[], $2::int[], $3::int[]) AS c("productId", available, reserved)
+           WHERE p."productId" = c."productId"`,
+          [
+            changed,
+            changed.map((productId) => fromAvailable.get(productId) ?? 0),
+            changed.map((productId) => fromReserved.get(productId) ?? 0),
+          ],
+        );
+      }
+
+      this.logger.log(
+        `${committed.length} reservas confirmadas para ${ids.length} pedidos`,
+      );
+      if (fromAvailable.size > 0) {
+        this.logger.warn(
+          `Reservas vencidas antes del commit tomadas de nuevo de availableStock: ${[...fromAvailable.keys()].join(', ')}`,
+        );
+      }
+      for (const { orderId, reason } of failed) {
+        this.logger.warn(
+          `No se pudo confirmar la reserva vencida del pedido ${orderId}: ${reason}`,
+        );
+      }
+      return { committed: committed.length, failed };
+    });
+  }
+
+  /**
+   * Libera las reservas de pedidos cancelados devolviendo sus unidades a availableStock.
+   * Las reservas ya confirmadas, liberadas o vencidas no se tocan. Devuelve cuántas se liberaron.
+   */
+  async releaseReservations(orderIds: string[]): Promise<number> {
+    const ids = this.settlementIds(orderIds);
+    if (ids.length === 0) {
+      return 0;
+    }
+    // Las reservas de productos calientes deben tener su fila antes de cerrarlas
+    await this.hotStockReservationService.flushOrders(ids);
+
+    return this.dataSource.transaction(async (manager) => {
+      const settled: SettledStock[] = await manager.query(
+        `WITH settled AS (
+           UPDATE order_stock_reservations
+           SET "status" = 'RELEASED', "settledAt" = now()
+           WHERE "orderId" = ANY($1::uuid[]) AND "status" = 'RESERVED'
+           RETURNING "productId", "quantity"
+         )
+         SELECT "productId", sum("quantity")::int AS quantity, count(*)::int AS reservations
+         FROM settled GROUP BY "productId"`,
+        [ids],
+      );
+      await this.returnReservedStock(manager, settled);
+      const reservations = settled.reduce((sum, s) => sum + s.reservations, 0);
+      this.logger.log(
+        `${reservations} reservas liberadas para ${ids.length} pedidos`,
+      );
+      return reservations;
+    });
+  }
+
+  private settlementIds(orderIds: string[]): string[] {
+    return [
+      ...new Set(orderIds.map((orderId) => orderId.toLowerCase())),
+    ].filter((orderId) => UUID_PATTERN.test(orderId));
+  }
+
+  /**
+   * Libera hasta limit reservas vencidas, las más antiguas primero, en una transacción corta.
+   * Las filas las encuentra el índice parcial de reservas abiertas, y SKIP LOCKED deja que varias
+   * instancias barran a la vez sin esperar a las filas que otra ya está liberando o cerrando.
+   * Devuelve cuántas se liberaron.
+   */
+  async releaseExpiredReservations(limit: number): Promise<number> {
+    return this.dataSource.transaction(async (manager) => {
+      const released: SettledStock[] = await manager.query(
+        `WITH expired AS (
+           SELECT "orderId", "productId" FROM order_stock_reservations
+           WHERE "status" = 'RESERVED' AND "expiresAt" <= now()
+           ORDER BY "expiresAt"
+           LIMIT $1
+           FOR UPDATE SKIP LOCKED
+         ), released AS (
+           UPDATE order_stock_reservations AS s
+           SET "status" = 'RELEASED', "settledAt" = now()
+           FROM expired e
+           WHERE s."orderId" = e."orderId" AND s."productId" = e."productId"
+           RETURNING s."productId", s."quantity"
+         )
+         SELECT "productId", sum("quantity")::int AS quantity, count(*)::int AS reservations
+         FROM released GROUP BY "productId"`,
+        [limit],
+      );
+      await this.returnReservedStock(manager, released);
+      return released.reduce((sum, s) => sum + s.reservations, 0);
+    });
+  }
+
+  /**
+   * Borra hasta limit reservas cerradas hace más de retentionMs, para que la tabla no crezca sin fin
+   */
+  async purgeSettledReservations(
+    retentionMs: number,
+    limit: number,
+  ): Promise<number> {
+    const [result]: { deleted: number }[] = await this.dataSource.query(
+      `WITH deleted AS (
+         DELETE FROM order_stock_reservations
+         WHERE ("orderId", "productId") IN (
+           SELECT "orderId", "productId" FROM order_stock_reservations
+           WHERE "status" <> 'RESERVED'
+             AND "settledAt" < now() - $1 * interval '1 millisecond'
+           LIMIT $2
+           FOR UPDATE SKIP LOCKED
+         )
+         RETURNING 1
+       )
+       SELECT count(*)::int AS deleted FROM deleted`,
+      [retentionMs, limit],
+    );
+    return result.deleted;
+  }
+
+  /**
+   * Devuelve a availableStock las unidades de las reservas liberadas, descontándolas de
+   * reservedStock. Las filas de products_stock se bloquean ordenadas por productId,
+   * como al reservar, y siempre después de las reservas.
+   */
+  private async returnReservedStock(
+    manager: EntityManager,
+    settled: SettledStock[],
+  ): Promise<void> {
+    if (settled.length === 0) {
+      return;
+    }
+    const productIds = settled.map((s) => s.productId).sort();
+    const quantities = new Map(settled.map((s) => [s.productId, s.quantity]));
+
+    await manager.query(
+      `SELECT 1 FROM products_stock WHERE "productId" = ANY($1::uuid[])
+       ORDER BY "productId" FOR UPDATE`,
+      [productIds],
+    );
+    await manager.query(
+      `UPDATE products_stock AS p
+       SET "availableStock" = p."availableStock" + s.quantity,
+           "reservedStock" = p."reservedStock" - s.quantity,
+           "updatedAt" = now()
+       FROM unnest($1::uuid[], $2::int[]) AS s("productId", quantity)
+       WHERE p."productId" = s."productId"`,
+      [
+        productIds,
+        productIds.map((productId) => quantities.get(productId)),
+      ],
+    );
+  }
+
   /**
    * Obtiene todos los stocks de productos
    */
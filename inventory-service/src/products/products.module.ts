@@ -2,12 +2,26 @@ import { Module } from '@nestjs/common';
 import { TypeOrmModule } from '@nestjs/typeorm';
 import { ProductsController } from './products.controller';
 import { ProductStock } from './entities/product-stock.entity';
+import { HotStockEscrow } from './entities/hot-stock-escrow.entity';
+import { OrderStockReservation } from './entities/order-stock-reservation.entity';
 import { ProductStockService } from './product-stock.service';
+import { HotStockReservationService } from './hot-stock-reservation.service';
+import { ReservationSweeperService } from './reservation-sweeper.service';
 
 @Module({
-  imports: [TypeOrmModule.forFeature([ProductStock])],
+  imports: [
+    TypeOrmModule.forFeature([
+      ProductStock,
+      HotStockEscrow,
+      OrderStockReservation,
+    ]),
+  ],
   controllers: [ProductsController],
-  providers: [ProductStockService],
+  providers: [
+    ProductStockService,
+    HotStockReservationService,
+    ReservationSweeperService,
+  ],
   exports: [ProductStockService],
 })
 export class ProductsModule {}
@@ -0,0 +1,94 @@
+import {
+  Injectable,
+  Logger,
+  OnApplicationShutdown,
+  OnModuleInit,
+} from '@nestjs/common';
+import { ProductStockService } from './product-stock.service';
+
+/**
+ * Devuelve a availableStock las reservas vencidas (pedidos que nunca se confirmaron ni cancelaron,
+ * por ejemplo porque se perdió la respuesta) y borra las reservas cerradas más antiguas que
+ * RESERVATION_RETENTION_MS.
+ *
+ * Cada RESERVATION_SWEEP_MS procesa lotes de RESERVATION_SWEEP_BATCH reservas, cada uno en su propia
+ * transacción, hasta que no queda ninguna pendiente: las filas de products_stock solo se bloquean lo
+ * que dura un lote y las reservas que se están creando o cerrando no se esperan.
+ */
+@Injectable()
+export class ReservationSweeperService
+  implements OnModuleInit, OnApplicationShutdown
+{
+  private readonly logger = new Logger(ReservationSweeperService.name);
+  private readonly sweepIntervalMs = parseInt(
+    process.env.RESERVATION_SWEEP_MS || '30000',
+    10,
+  );
+  private readonly batchSize = parseInt(
+    process.env.RESERVATION_SWEEP_BATCH || '500',
+    10,
+  );
+  private readonly retentionMs = parseInt(
+    process.env.RESERVATION_RETENTION_MS || '604800000',
+    10,
+  );
+  private sweepTimer?: NodeJS.Timeout;
+  private sweeping?: Promise<void>;
+
+  constructor(private readonly productStockService: ProductStockService) {}
+
+  onModuleInit(): void {
+    if (this.sweepIntervalMs <= 0) {
+      return;
+    }
+
+    this.sweepTimer = setInterval(() => {
+      this.sweep().catch((error) =>
+        this.logger.error('Error al barrer las reservas de stock', error),
+      );
+    }, this.sweepIntervalMs);
+  }
+
+  async onApplicationShutdown(): Promise<void> {
+    clearInterval(this.sweepTimer);
+    await this.sweeping?.catch(() => undefined);
+  }
+
+  /**
+   * Un barrido que dura más que el intervalo no se solapa con el siguiente
+   */
+  sweep(): Promise<void> {
+    if (!this.sweeping) {
+      this.sweeping = this.sweepAll().finally(() => {
+        this.sweeping = undefined;
+      });
+    }
+    return this.sweeping;
+  }
+
+  private async sweepAll(): Promise<void> {
+    let released = 0;
+    let batch: number;
+    do {
+      batch = await this.productStockService.releaseExpiredReservations(
+        this.batchSize,
+      );
+      released += batch;
+    } while (batch === this.batchSize);
+
+    let purged = 0;
+    do {
+      batch = await this.productStockService.purgeSettledReservations(
+        this.retentionMs,
+        this.batchSize,
+      );
+      purged += batch;
+    } while (batch === this.batchSize);
+
+    if (released > 0 || purged > 0) {
+      this.logger.log(
+        `Reservas vencidas liberadas: ${released}, reservas cerradas borradas: ${purged}`,
+      );
+    }
+  }
+}
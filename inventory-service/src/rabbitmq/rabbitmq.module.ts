@@ -1,14 +1,14 @@
 import { Module } from '@nestjs/common';
-import { TypeOrmModule } from '@nestjs/typeorm';
-import { ProductStock } from '../products/entities/product-stock.entity';
-import { ProductStockService } from '../products/product-stock.service';
+import { ProductsModule } from '../products/products.module';
 import { RabbitMQService } from './rabbitmq.service';
 import { OrderEventsConsumer } from '../messaging/order-events.consumer';
+import { OrderBatchConsumer } from '../messaging/order-batch.consumer';
 
 @Module({
-  imports: [TypeOrmModule.forFeature([ProductStock])],
+  // ProductStockService viene de ProductsModule para compartir la reserva en memoria
+  imports: [ProductsModule],
   controllers: [OrderEventsConsumer],
-  providers: [ProductStockService, RabbitMQService],
-  exports: [ProductStockService, RabbitMQService],
+  providers: [RabbitMQService, OrderBatchConsumer],
+  exports: [RabbitMQService],
 })
 export class RabbitmqModule {}
@@ -0,0 +1,88 @@
+package com.espe.gestion_productos.benchmarks;
+
+import com.espe.gestion_productos.dto.CreateOrderRequest;
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.dto.OrderItemRequest;
+import com.espe.gestion_productos.dto.ShippingAddressRequest;
+import com.espe.gestion_productos.enums.EventType;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.messagin.OrderEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+// Realistic inputs shared by the benchmarks; all ids are lowercase UUIDs as the API requires
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static CreateOrderRequest createOrderRequest(int itemCount) {
+        List<OrderItemRequest> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(OrderItemRequest.builder()
+                    .productId(UUID.randomUUID().toString())
+                    .quantity(i + 1)
+                    .unitPrice(19.99)
+                    .build());
+        }
+        return CreateOrderRequest.builder()
+                .customerId(UUID.randomUUID().toString())
+                .items(items)
+                .shippingAddress(ShippingAddressRequest.builder()
+                        .street("Av. Amazonas N34-451")
+                        .city("Quito")
+                        .state("Pichincha")
+                        .zipCode("170135")
+                        .country("EC")
+                        .build())
+                .paymentReference("PAY-" + UUID.randomUUID())
+                .build();
+    }
+
+    static List<OrderDetailsRow> orderDetailsRows(int itemCount) {
+        String orderId = UUID.randomUUID().toString();
+        String customerId = UUID.randomUUID().toString();
+        List<OrderDetailsRow> rows = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            rows.add(new OrderDetailsRow(orderId, customerId, OrderStatus.CONFIRMED, null, "PAY-1",
+                    "Av. Amazonas N34-451", "Quito", "Pichincha", "170135", "EC",
+                    UUID.randomUUID().toString(), i + 1, 19.99));
+        }
+        return rows;
+    }
+
+    static OrderEvent orderCreatedEvent(int itemCount) {
+        List<OrderEvent.OrderItemEvent> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(OrderEvent.OrderItemEvent.builder()
+                    .productId(UUID.randomUUID().toString())
+                    .quantity(i + 1)
+                    .unitPrice(19.99)
+                    .build());
+        }
+        return OrderEvent.builder()
+                .orderId(UUID.randomUUID().toString())
+                .customerId(UUID.randomUUID().toString())
+                .eventType(EventType.ORDER_CREATED)
+                .items(items)
+                .shippingAddress(OrderEvent.ShippingAddressEvent.builder()
+                        .street("Av. Amazonas N34-451")
+                        .city("Quito")
+                        .state("Pichincha")
+                        .zipCode("170135")
+                        .country("EC")
+                        .build())
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    static OrderEvent stockReservedEvent() {
+        return OrderEvent.builder()
+                .orderId(UUID.randomUUID().toString())
+                .eventType(EventType.STOCK_RESERVED)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+}
@@ -0,0 +1,69 @@
+package com.espe.gestion_productos.benchmarks;
+
+import com.espe.gestion_productos.messagin.AvroMessageConverter;
+import com.espe.gestion_productos.messagin.OrderEvent;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * OrderEvent on the AMQP wire: JSON (current default) against Avro, encode and decode.
+ * Payload sizes are printed once per fork; run with -prof gc for bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageSerializationBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    private final MessageConverter jsonConverter = new Jackson2JsonMessageConverter();
+    private final MessageConverter avroConverter = new AvroMessageConverter(OrderEvent.class);
+
+    private OrderEvent event;
+    private Message jsonMessage;
+    private Message avroMessage;
+
+    @Setup
+    public void setUp() {
+        event = BenchmarkData.orderCreatedEvent(itemCount);
+        jsonMessage = withInferredType(jsonConverter.toMessage(event, new MessageProperties()));
+        avroMessage = withInferredType(avroConverter.toMessage(event, new MessageProperties()));
+        System.out.printf("%n%d items: json=%d bytes, avro=%d bytes%n",
+                itemCount, jsonMessage.getBody().length, avroMessage.getBody().length);
+    }
+
+    @Benchmark
+    public Message encodeJson() {
+        return jsonConverter.toMessage(event, new MessageProperties());
+    }
+
+    @Benchmark
+    public Message encodeAvro() {
+        return avroConverter.toMessage(event, new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return jsonConverter.fromMessage(jsonMessage);
+    }
+
+    @Benchmark
+    public Object decodeAvro() {
+        return avroConverter.fromMessage(avroMessage);
+    }
+
+    // What the listener adapter sets before converting, so JSON resolves the type the same way as in OrderConsumer
+    private static Message withInferredType(Message message) {
+        message.getMessageProperties().setInferredArgumentType(OrderEvent.class);
+        return message;
+    }
+}
@@ -0,0 +1,101 @@
+package com.espe.gestion_productos.benchmarks;
+
+import com.espe.gestion_productos.config.RabbitMQConfig;
+import com.espe.gestion_productos.dto.CreateOrderRequest;
+import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.mappers.OrderMapper;
+import com.espe.gestion_productos.messagin.OrderEvent;
+import com.espe.gestion_productos.messagin.OrderProducer;
+import com.espe.gestion_productos.models.Order;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConverter;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU and allocation cost of the per-order work outside the database and the broker:
+ * request validation and mapping on POST /api/orders, the OrderCreated event build and
+ * encode in OrderProducer, response decoding for OrderConsumer and the details mapping
+ * behind GET /api/orders/{orderId}. Run with -prof gc to get bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderHotPathBenchmark {
+
+    @Param({"1", "10", "100"})
+    private int itemCount;
+
+    // The converter the application wires into RabbitTemplate and the listener containers
+    private final MessageConverter messageConverter = new RabbitMQConfig().messageConverter();
+    // buildOrderCreatedEvent does not touch the template or the outbox repository
+    private final OrderProducer orderProducer = new OrderProducer(null, null, new SimpleMeterRegistry(), 1);
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CreateOrderRequest request;
+    private Order order;
+    private List<OrderDetailsRow> detailsRows;
+    private Message inventoryResponse;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        request = BenchmarkData.createOrderRequest(itemCount);
+        order = OrderMapper.toOrder(request);
+        order.generateId();
+        detailsRows = BenchmarkData.orderDetailsRows(itemCount);
+
+        inventoryResponse = messageConverter.toMessage(BenchmarkData.stockReservedEvent(), new MessageProperties());
+        inventoryResponse.getMessageProperties().setInferredArgumentType(OrderEvent.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateOrderRequest>> validateCreateOrderRequest() {
+        return validator.validate(request);
+    }
+
+    @Benchmark
+    public Order mapCreateOrderRequest() {
+        return OrderMapper.toOrder(request);
+    }
+
+    @Benchmark
+    public OrderEvent buildOrderCreatedEvent() {
+        return orderProducer.buildOrderCreatedEvent(order);
+    }
+
+    @Benchmark
+    public Message buildAndEncodeOrderCreatedEvent() {
+        return messageConverter.toMessage(orderProducer.buildOrderCreatedEvent(order), new MessageProperties());
+    }
+
+    @Benchmark
+    public Object decodeInventoryResponse() {
+        return messageConverter.fromMessage(inventoryResponse);
+    }
+
+    @Benchmark
+    public OrderDetailsResponse mapOrderDetails() {
+        return OrderMapper.toOrderDetails(detailsRows);
+    }
+}
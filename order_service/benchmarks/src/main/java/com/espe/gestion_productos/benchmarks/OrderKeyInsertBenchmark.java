@@ -0,0 +1,151 @@
+package com.espe.gestion_productos.benchmarks;
+
+import org.hibernate.id.uuid.UuidVersion7Strategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Insert throughput of the orders/order_items keys against a real PostgreSQL: random v4 ids in
+ * VARCHAR(36) columns (the schema before V2__uuid_keys) against native uuid columns with random v4
+ * and with the time-ordered v7 ids Order.generateId now assigns. Each table is preloaded so the
+ * indexes are past the point where random inserts stop fitting in cache; index sizes are printed
+ * at the end of each trial. Connection settings come from -Dbenchmark.jdbc.url/user/password.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderKeyInsertBenchmark {
+
+    private static final int BATCH_SIZE = 100;
+    private static final int CUSTOMER_COUNT = 10_000;
+
+    public enum KeyType {
+        VARCHAR_V4("varchar(36)"),
+        UUID_V4("uuid"),
+        UUID_V7("uuid");
+
+        private final String columnType;
+
+        KeyType(String columnType) {
+            this.columnType = columnType;
+        }
+    }
+
+    @Param({"VARCHAR_V4", "UUID_V4", "UUID_V7"})
+    private KeyType keyType;
+
+    @Param({"1000000"})
+    private int preloadedOrders;
+
+    private Connection connection;
+    private PreparedStatement insertOrder;
+    private PreparedStatement insertItem;
+    private UUID[] customers;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection(
+                System.getProperty("benchmark.jdbc.url", "jdbc:postgresql://localhost:5432/order_db?reWriteBatchedInserts=true"),
+                System.getProperty("benchmark.jdbc.user", "admin"),
+                System.getProperty("benchmark.jdbc.password", "password123"));
+
+        // Same key columns and indexes as orders and order_items
+        String type = keyType.columnType;
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("DROP TABLE IF EXISTS bench_order_items, bench_orders");
+            ddl.execute("CREATE TABLE bench_orders (order_id " + type + " PRIMARY KEY, customer_id " + type + " NOT NULL, "
+                    + "status varchar(20) NOT NULL, created_at timestamptz NOT NULL)");
+            ddl.execute("CREATE INDEX bench_orders_customer_created ON bench_orders (customer_id, created_at, order_id)");
+            ddl.execute("CREATE TABLE bench_order_items (id bigserial PRIMARY KEY, "
+                    + "order_id " + type + " NOT NULL REFERENCES bench_orders, product_id " + type + " NOT NULL, quantity integer NOT NULL)");
+            ddl.execute("CREATE INDEX bench_order_items_order_id ON bench_order_items (order_id)");
+        }
+
+        customers = new UUID[CUSTOMER_COUNT];
+        for (int i = 0; i < CUSTOMER_COUNT; i++) {
+            customers[i] = UUID.randomUUID();
+        }
+
+        connection.setAutoCommit(false);
+        insertOrder = connection.prepareStatement(
+                "INSERT INTO bench_orders (order_id, customer_id, status, created_at) VALUES (?, ?, 'PENDING', ?)");
+        insertItem = connection.prepareStatement(
+                "INSERT INTO bench_order_items (order_id, product_id, quantity) VALUES (?, ?, 1)");
+        for (int loaded = 0; loaded < preloadedOrders; loaded += BATCH_SIZE) {
+            insertBatch();
+        }
+        try (Statement analyze = connection.createStatement()) {
+            analyze.execute("ANALYZE bench_orders, bench_order_items");
+        }
+        connection.commit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet sizes = statement.executeQuery("SELECT c.relname, pg_size_pretty(pg_relation_size(c.oid)) "
+                    + "FROM pg_class c WHERE c.relname IN ('bench_orders_pkey', 'bench_orders_customer_created', "
+                    + "'bench_order_items_order_id') ORDER BY c.relname")) {
+                System.out.printf("%n%s index sizes:", keyType);
+                while (sizes.next()) {
+                    System.out.printf(" %s=%s", sizes.getString(1), sizes.getString(2));
+                }
+                System.out.println();
+            }
+            statement.execute("DROP TABLE bench_order_items, bench_orders");
+        }
+        connection.commit();
+        connection.close();
+    }
+
+    // One transaction of BATCH_SIZE orders with one item each, as OrderService.createOrders persists a chunk
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void insertOrders() throws SQLException {
+        insertBatch();
+    }
+
+    private void insertBatch() throws SQLException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Timestamp now = Timestamp.from(Instant.now());
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            UUID orderId = keyType == KeyType.UUID_V7
+                    ? UuidVersion7Strategy.INSTANCE.generateUuid(null)
+                    : UUID.randomUUID();
+            bindKey(insertOrder, 1, orderId);
+            bindKey(insertOrder, 2, customers[random.nextInt(CUSTOMER_COUNT)]);
+            insertOrder.setTimestamp(3, now);
+            insertOrder.addBatch();
+
+            bindKey(insertItem, 1, orderId);
+            bindKey(insertItem, 2, UUID.randomUUID());
+            insertItem.addBatch();
+        }
+        insertOrder.executeBatch();
+        insertItem.executeBatch();
+        connection.commit();
+    }
+
+    private void bindKey(PreparedStatement statement, int index, UUID id) throws SQLException {
+        if (keyType == KeyType.VARCHAR_V4) {
+            statement.setString(index, id.toString());
+        } else {
+            statement.setObject(index, id, Types.OTHER);
+        }
+    }
+}
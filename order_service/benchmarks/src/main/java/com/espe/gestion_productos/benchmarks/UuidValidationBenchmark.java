@@ -0,0 +1,133 @@
+package com.espe.gestion_productos.benchmarks;
+
+import com.espe.gestion_productos.dto.CreateOrderRequest;
+import com.espe.gestion_productos.dto.OrderItemRequest;
+import com.espe.gestion_productos.dto.ShippingAddressRequest;
+import com.espe.gestion_productos.validation.CanonicalUuidValidator;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Valid;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @CanonicalUuid against the @Pattern regex it replaced on CreateOrderRequest and OrderItemRequest,
+ * for a whole large order and for a single id. Run with -prof gc to compare bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UuidValidationBenchmark {
+
+    private static final String UUID_REGEX = "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$";
+    private static final java.util.regex.Pattern COMPILED_UUID_REGEX = java.util.regex.Pattern.compile(UUID_REGEX);
+
+    @Param({"500"})
+    private int itemCount;
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private CreateOrderRequest request;
+    private PatternCreateOrderRequest patternRequest;
+    private String productId;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        request = BenchmarkData.createOrderRequest(itemCount);
+        patternRequest = PatternCreateOrderRequest.copyOf(request);
+        productId = request.getItems().get(0).getProductId();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<CreateOrderRequest>> validateOrderCanonicalUuid() {
+        return validator.validate(request);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PatternCreateOrderRequest>> validateOrderPattern() {
+        return validator.validate(patternRequest);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean singleIdCanonicalUuid() {
+        return CanonicalUuidValidator.isCanonical(productId);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean singleIdPattern() {
+        return COMPILED_UUID_REGEX.matcher(productId).matches();
+    }
+
+    // CreateOrderRequest and OrderItemRequest as they were validated before @CanonicalUuid
+    public static class PatternCreateOrderRequest {
+
+        @NotNull(message = "Customer ID is required")
+        @Pattern(regexp = UUID_REGEX, message = "Invalid UUID format for customerId")
+        public String customerId;
+
+        @NotEmpty(message = "Items list cannot be empty")
+        @Valid
+        public List<PatternOrderItemRequest> items;
+
+        @NotNull(message = "Shipping address is required")
+        @Valid
+        public ShippingAddressRequest shippingAddress;
+
+        @NotBlank(message = "Payment reference is required")
+        public String paymentReference;
+
+        static PatternCreateOrderRequest copyOf(CreateOrderRequest request) {
+            PatternCreateOrderRequest copy = new PatternCreateOrderRequest();
+            copy.customerId = request.getCustomerId();
+            copy.items = request.getItems().stream().map(PatternOrderItemRequest::copyOf).toList();
+            copy.shippingAddress = request.getShippingAddress();
+            copy.paymentReference = request.getPaymentReference();
+            return copy;
+        }
+    }
+
+    public static class PatternOrderItemRequest {
+
+        @NotNull(message = "Product ID is required")
+        @Pattern(regexp = UUID_REGEX, message = "Invalid UUID format for productId")
+        public String productId;
+
+        @NotNull(message = "Quantity is required")
+        @Min(value = 1, message = "Quantity must be at least 1")
+        public Integer quantity;
+
+        @NotNull(message = "Unit price is required")
+        @Min(value = 0, message = "Unit price must be greater than or equal to 0")
+        public Double unitPrice;
+
+        static PatternOrderItemRequest copyOf(OrderItemRequest item) {
+            PatternOrderItemRequest copy = new PatternOrderItemRequest();
+            copy.productId = item.getProductId();
+            copy.quantity = item.getQuantity();
+            copy.unitPrice = item.getUnitPrice();
+            return copy;
+        }
+    }
+}
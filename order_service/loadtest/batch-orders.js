@@ -0,0 +1,63 @@
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+import { uuidv4 } from 'https://jslib.k6.io/k6-utils/1.4.0/index.js';
+
+// Pedidos/segundo del endpoint por lotes, para compararlo con create-order.js sobre el mismo hardware.
+// Uso: k6 run -e BASE_URL=http://localhost:8081/order-service -e VUS=8 -e BATCH_SIZE=1000 loadtest/batch-orders.js
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8081/order-service';
+const VUS = parseInt(__ENV.VUS || '8', 10);
+const DURATION = __ENV.DURATION || '2m';
+const BATCH_SIZE = parseInt(__ENV.BATCH_SIZE || '1000', 10);
+
+const ordersCreated = new Counter('orders_created');
+
+export const options = {
+  scenarios: {
+    create_batches: {
+      executor: 'constant-vus',
+      vus: VUS,
+      duration: DURATION,
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+  thresholds: {
+    http_req_failed: ['rate<0.01'],
+  },
+};
+
+function order() {
+  return JSON.stringify({
+    customerId: uuidv4(),
+    items: [
+      { productId: 'a3c2b1d0-6b0e-4f2b-9c1a-2d3f4a5b6c7d', quantity: 1, unitPrice: 1500.0 },
+      { productId: 'b4d3c2e1-7c1f-4a3c-8d2b-3e4f5a6b7c8e', quantity: 2, unitPrice: 99.99 },
+    ],
+    shippingAddress: {
+      country: 'EC',
+      city: 'Quito',
+      street: 'Av. Amazonas N34-451',
+      zipCode: '170135',
+      state: 'Pichincha',
+    },
+    paymentReference: `PAY-${uuidv4()}`,
+  });
+}
+
+export default function () {
+  const lines = [];
+  for (let i = 0; i < BATCH_SIZE; i++) {
+    lines.push(order());
+  }
+
+  const res = http.post(`${BASE_URL}/api/orders/batch`, lines.join('\n'), {
+    headers: { 'Content-Type': 'application/x-ndjson' },
+  });
+
+  check(res, {
+    'status 200': (r) => r.status === 200,
+  });
+  if (res.status === 200) {
+    ordersCreated.add(res.json('created'));
+  }
+}
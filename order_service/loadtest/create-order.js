@@ -0,0 +1,49 @@
+import http from 'k6/http';
+import { check } from 'k6';
+import { uuidv4 } from 'https://jslib.k6.io/k6-utils/1.4.0/index.js';
+
+// Carga de creación de pedidos usada para comparar hilos de plataforma vs hilos virtuales.
+// Uso: k6 run -e BASE_URL=http://localhost:8081/order-service -e VUS=2000 loadtest/create-order.js
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8081/order-service';
+const VUS = parseInt(__ENV.VUS || '2000', 10);
+const DURATION = __ENV.DURATION || '2m';
+
+export const options = {
+  scenarios: {
+    create_orders: {
+      executor: 'constant-vus',
+      vus: VUS,
+      duration: DURATION,
+    },
+  },
+  summaryTrendStats: ['avg', 'p(50)', 'p(95)', 'p(99)', 'max'],
+  thresholds: {
+    http_req_failed: ['rate<0.01'],
+  },
+};
+
+export default function () {
+  const payload = JSON.stringify({
+    customerId: uuidv4(),
+    items: [
+      { productId: 'a3c2b1d0-6b0e-4f2b-9c1a-2d3f4a5b6c7d', quantity: 1, unitPrice: 1500.0 },
+      { productId: 'b4d3c2e1-7c1f-4a3c-8d2b-3e4f5a6b7c8e', quantity: 2, unitPrice: 99.99 },
+    ],
+    shippingAddress: {
+      country: 'EC',
+      city: 'Quito',
+      street: 'Av. Amazonas N34-451',
+      zipCode: '170135',
+      state: 'Pichincha',
+    },
+    paymentReference: `PAY-${uuidv4()}`,
+  });
+
+  const res = http.post(`${BASE_URL}/api/orders`, payload, {
+    headers: { 'Content-Type': 'application/json' },
+  });
+
+  check(res, {
+    'status 201': (r) => r.status === 201,
+  });
+}
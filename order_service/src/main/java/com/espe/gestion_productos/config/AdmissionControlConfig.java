@@ -0,0 +1,37 @@
+package com.espe.gestion_productos.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Adaptive admission control on POST /api/orders. Runs before the virtual thread bulkhead, so
+ * order creation is shed first and reads keep their share of the pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "order.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig {
+
+    @Bean
+    public FilterRegistrationBean<OrderAdmissionFilter> orderAdmissionFilter(
+            tools.jackson.databind.ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${order.admission.initial-limit:50}") int initialLimit,
+            @Value("${order.admission.min-limit:10}") int minLimit,
+            @Value("${order.admission.max-limit:500}") int maxLimit,
+            @Value("${order.admission.tolerance:1.5}") double tolerance,
+            @Value("${order.admission.smoothing:0.2}") double smoothing,
+            @Value("${order.admission.retry-after-seconds:1}") long retryAfterSeconds) {
+        GradientConcurrencyLimit limit = new GradientConcurrencyLimit(initialLimit, minLimit, maxLimit, tolerance, smoothing);
+        FilterRegistrationBean<OrderAdmissionFilter> registration = new FilterRegistrationBean<>(
+                new OrderAdmissionFilter(limit, retryAfterSeconds, objectMapper, meterRegistry));
+        // Exact path: only single order creation, the batch endpoints are bounded by their size limit
+        registration.addUrlPatterns("/api/orders");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+}
@@ -0,0 +1,88 @@
+package com.espe.gestion_productos.config;
+
+/**
+ * Concurrency limit that follows request latency, after the gradient algorithm of Netflix's
+ * concurrency-limits. A short-term latency average rising above the long-term one means requests
+ * are queueing somewhere (Hikari, Postgres), so the limit shrinks by their ratio; while the two
+ * match the limit grows by about its square root, the headroom it keeps for bursts. Failed
+ * requests cut the limit multiplicatively.
+ */
+public class GradientConcurrencyLimit {
+
+    // Exponential moving averages over roughly the last 10 and 600 samples
+    private static final double SHORT_ALPHA = 2.0 / (10 + 1);
+    private static final double LONG_ALPHA = 2.0 / (600 + 1);
+    private static final double DROP_BACKOFF = 0.9;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+
+    private double limit;
+    private double shortRttNanos;
+    private double longRttNanos;
+
+    public GradientConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double tolerance, double smoothing) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission limits must satisfy 1 <= min <= initial <= max, got "
+                    + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        if (tolerance < 1 || smoothing <= 0 || smoothing > 1) {
+            throw new IllegalArgumentException("Admission tolerance must be >= 1 and smoothing in (0, 1]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.limit = initialLimit;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized double getShortRttMillis() {
+        return shortRttNanos / 1_000_000;
+    }
+
+    public synchronized double getLongRttMillis() {
+        return longRttNanos / 1_000_000;
+    }
+
+    /**
+     * @param rttNanos latency of a completed request
+     * @param inFlight requests in flight when it was admitted, itself included
+     */
+    public synchronized void onSample(long rttNanos, int inFlight) {
+        if (longRttNanos == 0) {
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+        } else {
+            shortRttNanos += (rttNanos - shortRttNanos) * SHORT_ALPHA;
+            longRttNanos += (rttNanos - longRttNanos) * LONG_ALPHA;
+        }
+        // After sustained overload the long-term average has drifted up; let it recover faster
+        if (longRttNanos > 2 * shortRttNanos) {
+            longRttNanos *= 0.95;
+        }
+
+        // A limit far above the actual concurrency says nothing about latency under load
+        if (inFlight < limit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        setLimit(limit * (1 - smoothing) + newLimit * smoothing);
+    }
+
+    // A request that failed with a server error or an exception
+    public synchronized void onDropped() {
+        setLimit(limit * DROP_BACKOFF);
+    }
+
+    private void setLimit(double newLimit) {
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+}
@@ -0,0 +1,107 @@
+package com.espe.gestion_productos.config;
+
+import com.espe.gestion_productos.exception.ErrorResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for order creation: admits requests while fewer than the adaptive limit are
+ * in flight and answers the rest right away with 503 and Retry-After, instead of letting them
+ * wait on the connection pool until latency collapses for everyone. The limit follows the
+ * latency of the admitted requests (see GradientConcurrencyLimit).
+ */
+@Slf4j
+public class OrderAdmissionFilter extends OncePerRequestFilter {
+
+    private final GradientConcurrencyLimit limit;
+    private final long retryAfterSeconds;
+    private final tools.jackson.databind.ObjectMapper objectMapper;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejectedCounter;
+
+    public OrderAdmissionFilter(GradientConcurrencyLimit limit,
+                                long retryAfterSeconds,
+                                tools.jackson.databind.ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry) {
+        this.limit = limit;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.objectMapper = objectMapper;
+
+        Gauge.builder("order.admission.limit", limit, GradientConcurrencyLimit::getLimit)
+                .description("Order creation requests currently allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder("order.admission.in_flight", inFlight, AtomicInteger::get)
+                .description("Order creation requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("order.admission.latency.short", limit, GradientConcurrencyLimit::getShortRttMillis)
+                .description("Short-term average latency of admitted order creation requests")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        Gauge.builder("order.admission.latency.long", limit, GradientConcurrencyLimit::getLongRttMillis)
+                .description("Long-term average latency of admitted order creation requests, the no-load baseline")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("order.admission.rejected")
+                .description("Order creation requests rejected because the admission limit was reached")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !HttpMethod.POST.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        int admitted = inFlight.incrementAndGet();
+        if (admitted > limit.getLimit()) {
+            inFlight.decrementAndGet();
+            rejectedCounter.increment();
+            log.warn("Rejecting order creation: {} requests in flight, limit {}", admitted - 1, limit.getLimit());
+            reject(response);
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = response.getStatus() >= 500;
+        } finally {
+            inFlight.decrementAndGet();
+            if (failed) {
+                limit.onDropped();
+            } else if (response.getStatus() < 400) {
+                // Client errors return before the database and would drag the latency averages down
+                limit.onSample(System.nanoTime() - start, admitted);
+            }
+        }
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        ErrorResponse errorResponse = ErrorResponse.builder()
+                .message("Too many orders in progress, please retry")
+                .error("Service Unavailable")
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .build();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), errorResponse);
+    }
+}
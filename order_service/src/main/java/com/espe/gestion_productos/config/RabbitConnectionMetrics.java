@@ -0,0 +1,71 @@
+package com.espe.gestion_productos.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionBlockedEvent;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionUnblockedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Channel cache gauges for the consumer and publisher connections, tagged by connection, and
+ * the number of connections the broker currently blocks with flow control (resource alarms).
+ * The time a send waits for a cached channel is recorded by OrderProducer as order.rabbit.publish.wait.
+ */
+@Component
+@Slf4j
+public class RabbitConnectionMetrics {
+
+    private final AtomicInteger blockedConnections = new AtomicInteger();
+
+    public RabbitConnectionMetrics(ConnectionFactory connectionFactory, MeterRegistry meterRegistry) {
+        registerChannelCacheGauges(connectionFactory, "consumer", meterRegistry);
+        registerChannelCacheGauges(connectionFactory.getPublisherConnectionFactory(), "publisher", meterRegistry);
+
+        Gauge.builder("order.rabbit.connections.blocked", blockedConnections, AtomicInteger::get)
+                .description("RabbitMQ connections currently blocked by broker flow control")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onBlocked(ConnectionBlockedEvent event) {
+        blockedConnections.incrementAndGet();
+        log.warn("RabbitMQ blocked connection {}: {}", event.getConnection(), event.getReason());
+    }
+
+    @EventListener
+    public void onUnblocked(ConnectionUnblockedEvent event) {
+        blockedConnections.updateAndGet(blocked -> Math.max(0, blocked - 1));
+        log.info("RabbitMQ unblocked connection {}", event.getConnection());
+    }
+
+    private static void registerChannelCacheGauges(ConnectionFactory connectionFactory, String connection,
+                                                   MeterRegistry meterRegistry) {
+        if (!(connectionFactory instanceof CachingConnectionFactory cachingFactory)) {
+            return;
+        }
+        Gauge.builder("order.rabbit.channels.idle", cachingFactory, factory -> cacheProperty(factory, "idleChannelsNotTx"))
+                .description("Channels returned to the cache and ready to be checked out")
+                .tag("connection", connection)
+                .register(meterRegistry);
+        Gauge.builder("order.rabbit.channels.idle.high-water", cachingFactory,
+                        factory -> cacheProperty(factory, "idleChannelsNotTxHighWater"))
+                .description("Most channels ever idle in the cache; at the cache size, busier periods opened extra channels")
+                .tag("connection", connection)
+                .register(meterRegistry);
+        Gauge.builder("order.rabbit.channels.cache.size", cachingFactory, CachingConnectionFactory::getChannelCacheSize)
+                .description("Channel cache size, a hard limit when a checkout timeout is set")
+                .tag("connection", connection)
+                .register(meterRegistry);
+    }
+
+    private static double cacheProperty(CachingConnectionFactory factory, String key) {
+        String value = factory.getCacheProperties().getProperty(key);
+        return value == null ? 0 : Double.parseDouble(value);
+    }
+}
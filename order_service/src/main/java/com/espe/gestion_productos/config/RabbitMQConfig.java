@@ -2,11 +2,22 @@ package com.espe.gestion_productos.config;
 
 import org.springframework.amqp.core.*;
 import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.CachingConnectionFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionNameStrategy;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import com.espe.gestion_productos.messagin.AvroMessageConverter;
+import com.espe.gestion_productos.messagin.OrderEvent;
+import org.springframework.amqp.support.converter.ContentTypeDelegatingMessageConverter;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
 
 @Configuration
 public class RabbitMQConfig {
@@ -15,12 +26,23 @@ public class RabbitMQConfig {
     public static final String ORDER_EXCHANGE = "order.exchange";
     public static final String ORDER_QUEUE = "order.queue";
     public static final String ORDER_ROUTING_KEY = "order.created";
+    public static final String STOCK_COMMIT_ROUTING_KEY = "order.stock.commit";
+    public static final String STOCK_RELEASE_ROUTING_KEY = "order.stock.release";
 
     // Inventory Response Exchanges and Queues
     public static final String INVENTORY_RESPONSE_EXCHANGE = "inventory.response.exchange";
     public static final String INVENTORY_RESPONSE_QUEUE = "order.inventory.response.queue";
     public static final String STOCK_RESERVED_ROUTING_KEY = "stock.reserved";
     public static final String STOCK_REJECTED_ROUTING_KEY = "stock.rejected";
+    public static final String STOCK_COMMIT_FAILED_ROUTING_KEY = "stock.commit.failed";
+
+    // Delayed retries and parking lot for inventory responses that could not be applied
+    public static final String INVENTORY_RESPONSE_RETRY_QUEUE_PREFIX = "order.inventory.response.retry.";
+    public static final String INVENTORY_RESPONSE_PARKING_LOT_QUEUE = "order.inventory.response.parking-lot";
+
+    public static String inventoryResponseRetryQueue(long delayMs) {
+        return INVENTORY_RESPONSE_RETRY_QUEUE_PREFIX + delayMs + "ms";
+    }
 
     // Order Exchange (for publishing OrderCreated events)
     @Bean
@@ -41,6 +63,21 @@ public class RabbitMQConfig {
                 .with(ORDER_ROUTING_KEY);
     }
 
+    // Stock commit/release go through order.queue too, so inventory sees them after the reservation
+    @Bean
+    public Binding stockCommitBinding(Queue orderQueue, TopicExchange orderExchange) {
+        return BindingBuilder.bind(orderQueue)
+                .to(orderExchange)
+                .with(STOCK_COMMIT_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding stockReleaseBinding(Queue orderQueue, TopicExchange orderExchange) {
+        return BindingBuilder.bind(orderQueue)
+                .to(orderExchange)
+                .with(STOCK_RELEASE_ROUTING_KEY);
+    }
+
     // Inventory Response Exchange (for consuming StockReserved/StockRejected events)
     @Bean
     public TopicExchange inventoryResponseExchange() {
@@ -68,24 +105,110 @@ public class RabbitMQConfig {
     }
 
     @Bean
-    public Jackson2JsonMessageConverter messageConverter() {
-        return new Jackson2JsonMessageConverter();
+    public Binding stockCommitFailedBinding(Queue inventoryResponseQueue, TopicExchange inventoryResponseExchange) {
+        return BindingBuilder.bind(inventoryResponseQueue)
+                .to(inventoryResponseExchange)
+                .with(STOCK_COMMIT_FAILED_ROUTING_KEY);
+    }
+
+    // One queue per retry delay: messages wait out the queue TTL with no consumer and are then
+    // dead-lettered back to the response queue through the default exchange
+    @Bean
+    public Declarables inventoryResponseRetryQueues(
+            @Value("${order.inventory-response.retry.delays-ms:1000,5000,30000,120000}") long[] delaysMs) {
+        List<Declarable> queues = new ArrayList<>();
+        for (long delayMs : delaysMs) {
+            queues.add(QueueBuilder.durable(inventoryResponseRetryQueue(delayMs))
+                    .ttl(Math.toIntExact(delayMs))
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(INVENTORY_RESPONSE_QUEUE)
+                    .build());
+        }
+        queues.add(QueueBuilder.durable(INVENTORY_RESPONSE_PARKING_LOT_QUEUE).build());
+        return new Declarables(queues);
+    }
+
+    // Picks the codec from the content type: JSON unless a message is application/avro
+    @Bean
+    public MessageConverter messageConverter() {
+        ContentTypeDelegatingMessageConverter converter =
+                new ContentTypeDelegatingMessageConverter(new Jackson2JsonMessageConverter());
+        converter.addDelegate(AvroMessageConverter.CONTENT_TYPE, new AvroMessageConverter(OrderEvent.class));
+        return converter;
     }
 
+    // Shown in the broker's connection list; the publisher connection gets a ".publisher" suffix
     @Bean
-    public RabbitTemplate rabbitTemplate(ConnectionFactory connectionFactory) {
+    public ConnectionNameStrategy connectionNameStrategy(
+            @Value("${spring.application.name:order-service}") String applicationName) {
+        return connectionFactory -> applicationName;
+    }
+
+    @Bean
+    public RabbitTemplate rabbitTemplate(
+            ConnectionFactory connectionFactory,
+            @Value("${order.rabbit.publisher.channel-cache-size:16}") int publisherChannelCacheSize,
+            @Value("${order.rabbit.publisher.channel-checkout-timeout-ms:2000}") long publisherCheckoutTimeoutMs) {
         RabbitTemplate rabbitTemplate = new RabbitTemplate(connectionFactory);
+        // Publishes on a separate connection: when the broker throttles a publish burst with flow control
+        // only that connection blocks, and the listeners keep consuming on theirs
+        rabbitTemplate.setUsePublisherConnection(true);
+        if (connectionFactory.getPublisherConnectionFactory() instanceof CachingConnectionFactory publisherFactory) {
+            // With a checkout timeout the cache size caps open channels; a send waits for a free one
+            publisherFactory.setChannelCacheSize(publisherChannelCacheSize);
+            publisherFactory.setChannelCheckoutTimeout(publisherCheckoutTimeoutMs);
+        }
         rabbitTemplate.setMessageConverter(messageConverter());
+        // Unroutable messages come back as returns, so the relay can retry them instead of dropping them.
+        // Returns are only attached to the CorrelationData when a callback is registered; OrderProducer reads them there
+        rabbitTemplate.setMandatory(true);
+        rabbitTemplate.setReturnsCallback(returned -> { });
         return rabbitTemplate;
     }
 
     @Bean
     public SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
             ConnectionFactory connectionFactory,
-            Jackson2JsonMessageConverter messageConverter) {
+            MessageConverter messageConverter,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        return baseListenerContainerFactory(connectionFactory, messageConverter, virtualThreads);
+    }
+
+    // Batch consumer for StockReserved/StockRejected: each delivered batch becomes one bulk status update
+    @Bean
+    public SimpleRabbitListenerContainerFactory inventoryResponseListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads,
+            @Value("${order.inventory-response.listener.concurrency:2}") int concurrency,
+            @Value("${order.inventory-response.listener.max-concurrency:8}") int maxConcurrency,
+            @Value("${order.inventory-response.listener.prefetch:250}") int prefetch,
+            @Value("${order.inventory-response.listener.batch-size:100}") int batchSize,
+            @Value("${order.inventory-response.listener.receive-timeout-ms:100}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory =
+                baseListenerContainerFactory(connectionFactory, messageConverter, virtualThreads);
+        factory.setConcurrentConsumers(concurrency);
+        factory.setMaxConcurrentConsumers(Math.max(concurrency, maxConcurrency));
+        // A consumer can only fill a batch with messages the broker has already pushed to it
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return factory;
+    }
+
+    private SimpleRabbitListenerContainerFactory baseListenerContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter messageConverter,
+            boolean virtualThreads) {
         SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
         factory.setConnectionFactory(connectionFactory);
         factory.setMessageConverter(messageConverter);
+        if (virtualThreads) {
+            factory.setTaskExecutor(new VirtualThreadTaskExecutor("rabbit-listener-"));
+        }
         return factory;
     }
 }
\ No newline at end of file
@@ -0,0 +1,43 @@
+package com.espe.gestion_productos.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Guards that only apply when spring.threads.virtual.enabled=true.
+ * Tomcat and the Rabbit listener containers then run on virtual threads, so the
+ * Hikari pool becomes the real concurrency limit and has to be shared explicitly.
+ */
+@Configuration
+@ConditionalOnThreading(Threading.VIRTUAL)
+@Slf4j
+public class VirtualThreadConfig {
+
+    @Bean
+    public DatabaseBulkheadFilter databaseBulkheadFilter(
+            DataSource dataSource,
+            tools.jackson.databind.ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${order.virtual-threads.reserved-connections:4}") int reservedConnections,
+            @Value("${order.virtual-threads.acquire-timeout-ms:500}") long acquireTimeoutMs) throws SQLException {
+        int poolSize = dataSource.unwrap(HikariDataSource.class).getMaximumPoolSize();
+        int httpPermits = poolSize - reservedConnections;
+        if (httpPermits < 1) {
+            throw new IllegalStateException("spring.datasource.hikari.maximum-pool-size (" + poolSize
+                    + ") must be larger than order.virtual-threads.reserved-connections (" + reservedConnections + ")");
+        }
+
+        log.info("Virtual threads enabled: {} of {} pooled connections available to HTTP requests, {} reserved for listeners and the outbox relay",
+                httpPermits, poolSize, reservedConnections);
+        return new DatabaseBulkheadFilter(httpPermits, acquireTimeoutMs, objectMapper, meterRegistry);
+    }
+}
@@ -0,0 +1,57 @@
+package com.espe.gestion_productos.config;
+
+import com.espe.gestion_productos.services.OrderSagaMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.validation.Errors;
+import org.springframework.validation.SmartValidator;
+import org.springframework.validation.Validator;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Times @Valid request body validation (the "validation" saga stage) by wrapping
+ * the application's Bean Validation validator for Spring MVC.
+ */
+@Configuration
+public class WebMvcValidationConfig implements WebMvcConfigurer {
+
+    private final jakarta.validation.Validator validator;
+    private final OrderSagaMetrics sagaMetrics;
+
+    public WebMvcValidationConfig(jakarta.validation.Validator validator, OrderSagaMetrics sagaMetrics) {
+        this.validator = validator;
+        this.sagaMetrics = sagaMetrics;
+    }
+
+    @Override
+    public Validator getValidator() {
+        return new TimedValidator(new SpringValidatorAdapter(validator), sagaMetrics.validationTimer());
+    }
+
+    private static final class TimedValidator implements SmartValidator {
+
+        private final SmartValidator delegate;
+        private final Timer timer;
+
+        private TimedValidator(SmartValidator delegate, Timer timer) {
+            this.delegate = delegate;
+            this.timer = timer;
+        }
+
+        @Override
+        public boolean supports(Class<?> clazz) {
+            return delegate.supports(clazz);
+        }
+
+        @Override
+        public void validate(Object target, Errors errors) {
+            timer.record(() -> delegate.validate(target, errors));
+        }
+
+        @Override
+        public void validate(Object target, Errors errors, Object... validationHints) {
+            timer.record(() -> delegate.validate(target, errors, validationHints));
+        }
+    }
+}
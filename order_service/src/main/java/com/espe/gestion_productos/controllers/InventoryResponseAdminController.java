@@ -0,0 +1,33 @@
+package com.espe.gestion_productos.controllers;
+
+import com.espe.gestion_productos.dto.ParkedMessageResponse;
+import com.espe.gestion_productos.dto.ReplayParkedResponse;
+import com.espe.gestion_productos.messagin.InventoryResponseRecoverer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+// Inspection and replay of inventory responses parked after their last retry
+@RestController
+@RequestMapping("/api/admin/inventory-responses/parked")
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryResponseAdminController {
+
+    private final InventoryResponseRecoverer recoverer;
+
+    // Leaves the messages parked
+    @GetMapping
+    public ResponseEntity<List<ParkedMessageResponse>> listParked(@RequestParam(defaultValue = "50") int limit) {
+        return ResponseEntity.ok(recoverer.peekParked(limit));
+    }
+
+    @PostMapping("/replay")
+    public ResponseEntity<ReplayParkedResponse> replayParked(@RequestParam(defaultValue = "100") int limit) {
+        log.info("Replaying up to {} parked inventory responses", limit);
+        return ResponseEntity.ok(recoverer.replayParked(limit));
+    }
+}
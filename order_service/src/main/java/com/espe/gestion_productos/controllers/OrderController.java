@@ -1,15 +1,39 @@
 package com.espe.gestion_productos.controllers;
 
+import com.espe.gestion_productos.dto.BatchCreateOrderResponse;
 import com.espe.gestion_productos.dto.CreateOrderRequest;
 import com.espe.gestion_productos.dto.CreateOrderResponse;
 import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.dto.OrderPageResponse;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.services.IdempotencyService;
+import com.espe.gestion_productos.services.OrderSagaMetrics;
 import com.espe.gestion_productos.services.OrderService;
+import com.espe.gestion_productos.services.OrderStatusSubscriptions;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tools.jackson.core.JacksonException;
+import tools.jackson.core.JsonParser;
+import tools.jackson.core.JsonToken;
+import tools.jackson.databind.DeserializationFeature;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.ObjectReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/orders")
@@ -17,13 +41,92 @@ import org.springframework.web.bind.annotation.*;
 @Slf4j
 public class OrderController {
 
+    private static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    private static final String IDEMPOTENT_REPLAY_HEADER = "Idempotent-Replayed";
+
     private final OrderService orderService;
+    private final IdempotencyService idempotencyService;
+    private final OrderStatusSubscriptions orderStatusSubscriptions;
+    private final OrderSagaMetrics sagaMetrics;
+    private final tools.jackson.databind.ObjectMapper objectMapper;
 
     @PostMapping
-    public ResponseEntity<CreateOrderResponse> createOrder(@Valid @RequestBody CreateOrderRequest request) {
+    public ResponseEntity<CreateOrderResponse> createOrder(
+            @Valid @RequestBody CreateOrderRequest request,
+            @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey) {
         log.info("Received order creation request for customerId: {}", request.getCustomerId());
-        CreateOrderResponse response = orderService.createOrder(request);
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        if (idempotencyKey == null) {
+            return ResponseEntity.status(HttpStatus.CREATED).body(persist(request, null));
+        }
+
+        IdempotencyService.validateKey(idempotencyKey);
+        Optional<CreateOrderResponse> previous = idempotencyService.find(idempotencyKey);
+        if (previous.isPresent()) {
+            log.info("Replaying response for Idempotency-Key {}, orderId: {}", idempotencyKey, previous.get().getOrderId());
+            return replay(previous.get());
+        }
+
+        try {
+            CreateOrderResponse response = persist(request, idempotencyKey);
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        } catch (DataIntegrityViolationException e) {
+            // A concurrent request with the same key committed first; answer with its order
+            return idempotencyService.find(idempotencyKey)
+                    .map(this::replay)
+                    .orElseThrow(() -> e);
+        }
+    }
+
+    // Streams the array so an oversized batch is rejected at the first order past the limit
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<BatchCreateOrderResponse> createOrders(InputStream body) {
+        List<CreateOrderRequest> requests = new ArrayList<>();
+        // Each element is read on its own from the middle of the array, so the rest is not a trailing token
+        ObjectReader entryReader = objectMapper.readerFor(JsonNode.class)
+                .without(DeserializationFeature.FAIL_ON_TRAILING_TOKENS);
+        try (JsonParser parser = objectMapper.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new IllegalArgumentException("Batch body must be a JSON array of orders");
+            }
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new IllegalArgumentException("Batch body ends before the array is closed");
+                }
+                orderService.checkBatchSize(requests.size() + 1);
+                requests.add(parseBatchEntry(entryReader.readValue(parser)));
+            }
+        } catch (JacksonException e) {
+            throw new IllegalArgumentException("Malformed batch body: " + e.getOriginalMessage());
+        }
+        log.info("Received batch order creation request with {} orders", requests.size());
+        return ResponseEntity.ok(orderService.createOrders(requests));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<BatchCreateOrderResponse> createOrdersNdjson(InputStream body) throws IOException {
+        List<CreateOrderRequest> requests = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    orderService.checkBatchSize(requests.size() + 1);
+                    requests.add(parseNdjsonLine(line));
+                }
+            }
+        }
+        log.info("Received NDJSON batch order creation request with {} orders", requests.size());
+        return ResponseEntity.ok(orderService.createOrders(requests));
+    }
+
+    @GetMapping
+    public ResponseEntity<OrderPageResponse> searchOrders(
+            @RequestParam(required = false) String customerId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String after,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("Received order search request for customerId: {}, status: {}", customerId, status);
+        return ResponseEntity.ok(orderService.searchOrders(customerId, status, after, limit));
     }
 
     @GetMapping("/{orderId}")
@@ -32,4 +135,41 @@ public class OrderController {
         OrderDetailsResponse response = orderService.getOrderDetails(orderId);
         return ResponseEntity.ok(response);
     }
+
+    // Emits one "status" event once the order is CONFIRMED or CANCELLED (immediately if it already is), then closes
+    @GetMapping(value = "/{orderId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamOrderStatus(@PathVariable String orderId) {
+        log.info("Received status stream subscription for orderId: {}", orderId);
+        return orderStatusSubscriptions.subscribe(orderId);
+    }
+
+    // The "persist" saga stage: the whole order transaction, including the outbox insert and the commit
+    private CreateOrderResponse persist(CreateOrderRequest request, String idempotencyKey) {
+        return sagaMetrics.persistTimer().record(() -> orderService.createOrder(request, idempotencyKey));
+    }
+
+    private ResponseEntity<CreateOrderResponse> replay(CreateOrderResponse response) {
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(IDEMPOTENT_REPLAY_HEADER, "true")
+                .body(response);
+    }
+
+    // A malformed entry becomes a null entry so it is rejected on its own instead of failing the batch
+    private CreateOrderRequest parseBatchEntry(JsonNode entry) {
+        try {
+            return objectMapper.treeToValue(entry, CreateOrderRequest.class);
+        } catch (JacksonException e) {
+            log.warn("Skipping malformed batch order entry: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
+
+    private CreateOrderRequest parseNdjsonLine(String line) {
+        try {
+            return objectMapper.readValue(line, CreateOrderRequest.class);
+        } catch (JacksonException e) {
+            log.warn("Skipping malformed NDJSON order entry: {}", e.getOriginalMessage());
+            return null;
+        }
+    }
 }
@@ -0,0 +1,21 @@
+package com.espe.gestion_productos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BatchCreateOrderResponse {
+
+    private int total;
+    private int created;
+    private int rejected;
+    private int failed;
+    private List<BatchOrderResult> results;
+}
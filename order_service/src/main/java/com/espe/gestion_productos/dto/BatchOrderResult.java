@@ -0,0 +1,22 @@
+package com.espe.gestion_productos.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.espe.gestion_productos.enums.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOrderResult {
+
+    private int index;
+    private String orderId;
+    private BatchItemStatus status;
+    private String message;
+}
@@ -4,7 +4,6 @@ import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -12,6 +11,8 @@ import lombok.NoArgsConstructor;
 
 import java.util.List;
 
+import com.espe.gestion_productos.validation.CanonicalUuid;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -19,10 +20,7 @@ import java.util.List;
 public class CreateOrderRequest {
     
     @NotNull(message = "Customer ID is required")
-    @Pattern(
-        regexp = "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$",
-        message = "Invalid UUID format for customerId"
-    )
+    @CanonicalUuid(message = "Invalid UUID format for customerId")
     private String customerId;
     
     @NotEmpty(message = "Items list cannot be empty")
@@ -0,0 +1,27 @@
+package com.espe.gestion_productos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import com.espe.gestion_productos.enums.*;
+
+// One row per order item (or a single row with null item columns for an order without items),
+// read straight into this projection so no entities are hydrated for a read-only response
+@Data
+@AllArgsConstructor
+public class OrderDetailsRow {
+
+    private String orderId;
+    private String customerId;
+    private OrderStatus status;
+    private String reason;
+    private String paymentReference;
+    private String street;
+    private String city;
+    private String state;
+    private String zipCode;
+    private String country;
+    private String productId;
+    private Integer quantity;
+    private Double unitPrice;
+}
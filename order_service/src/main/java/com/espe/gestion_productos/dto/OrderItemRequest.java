@@ -2,12 +2,13 @@ package com.espe.gestion_productos.dto;
 
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotNull;
-import jakarta.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import com.espe.gestion_productos.validation.CanonicalUuid;
+
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,10 +16,7 @@ import lombok.NoArgsConstructor;
 public class OrderItemRequest {
     
     @NotNull(message = "Product ID is required")
-    @Pattern(
-        regexp = "^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$",
-        message = "Invalid UUID format for productId"
-    )
+    @CanonicalUuid(message = "Invalid UUID format for productId")
     private String productId;
     
     @NotNull(message = "Quantity is required")
@@ -0,0 +1,19 @@
+package com.espe.gestion_productos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageResponse {
+
+    private List<OrderSummaryResponse> orders;
+    // Pass as ?after= to get the next page; null on the last page
+    private String nextCursor;
+}
@@ -0,0 +1,21 @@
+package com.espe.gestion_productos.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import com.espe.gestion_productos.enums.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OrderStatusResponse {
+
+    private String orderId;
+    private OrderStatus status;
+    private String reason;
+}
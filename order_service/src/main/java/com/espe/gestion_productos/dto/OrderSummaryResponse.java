@@ -0,0 +1,22 @@
+package com.espe.gestion_productos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+import com.espe.gestion_productos.enums.*;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderSummaryResponse {
+
+    private String orderId;
+    private String customerId;
+    private OrderStatus status;
+    private Instant createdAt;
+}
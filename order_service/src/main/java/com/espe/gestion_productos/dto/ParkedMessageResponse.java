@@ -0,0 +1,24 @@
+package com.espe.gestion_productos.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ParkedMessageResponse {
+
+    private String messageId;
+    private Integer attempts;
+    private String reason;
+    private Instant parkedAt;
+    private String contentType;
+    private String payload;
+}
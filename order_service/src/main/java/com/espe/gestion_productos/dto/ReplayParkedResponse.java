@@ -0,0 +1,16 @@
+package com.espe.gestion_productos.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplayParkedResponse {
+
+    private int replayed;
+    private long remaining;
+}
@@ -3,5 +3,10 @@ package com.espe.gestion_productos.enums;
 public enum EventType {
     ORDER_CREATED,
     STOCK_RESERVED,
-    STOCK_REJECTED
+    STOCK_REJECTED,
+    // Order to inventory once the saga is decided: keep (commit) or give back (release) the reserved stock
+    STOCK_COMMIT,
+    STOCK_RELEASE,
+    // Inventory to order: the reservation expired before STOCK_COMMIT and the stock is gone
+    STOCK_COMMIT_FAILED
 }
@@ -0,0 +1,7 @@
+package com.espe.gestion_productos.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    IN_FLIGHT,
+    FAILED
+}
@@ -0,0 +1,82 @@
+package com.espe.gestion_productos.mappers;
+
+import com.espe.gestion_productos.dto.CreateOrderRequest;
+import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.dto.OrderItemResponse;
+import com.espe.gestion_productos.dto.ShippingAddressRequest;
+import com.espe.gestion_productos.models.Order;
+import com.espe.gestion_productos.models.OrderItem;
+import com.espe.gestion_productos.models.ShippingAddress;
+import com.espe.gestion_productos.validation.CanonicalUuidValidator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+public final class OrderMapper {
+
+    private OrderMapper() {
+    }
+
+    public static Order toOrder(CreateOrderRequest request) {
+        Order order = Order.builder()
+                .customerId(UUID.fromString(request.getCustomerId()))
+                .paymentReference(request.getPaymentReference())
+                .shippingAddress(ShippingAddress.builder()
+                        .street(request.getShippingAddress().getStreet())
+                        .city(request.getShippingAddress().getCity())
+                        .state(request.getShippingAddress().getState())
+                        .zipCode(request.getShippingAddress().getZipCode())
+                        .country(request.getShippingAddress().getCountry())
+                        .build())
+                .build();
+
+        request.getItems().forEach(itemRequest -> {
+            OrderItem item = OrderItem.builder()
+                    .productId(UUID.fromString(itemRequest.getProductId()))
+                    .quantity(itemRequest.getQuantity())
+                    .unitPrice(itemRequest.getUnitPrice())
+                    .build();
+            order.addItem(item);
+        });
+
+        return order;
+    }
+
+    // Ids reach the API as canonical lowercase strings; anything else cannot name a stored order
+    public static UUID toUuid(String id) {
+        return id != null && CanonicalUuidValidator.isCanonical(id) ? UUID.fromString(id) : null;
+    }
+
+    // rows come from OrderRepository.findDetailsRows and must not be empty
+    public static OrderDetailsResponse toOrderDetails(List<OrderDetailsRow> rows) {
+        OrderDetailsRow first = rows.get(0);
+        List<OrderItemResponse> items = new ArrayList<>(rows.size());
+        for (OrderDetailsRow row : rows) {
+            if (row.getProductId() != null) {
+                items.add(OrderItemResponse.builder()
+                        .productId(row.getProductId())
+                        .quantity(row.getQuantity())
+                        .unitPrice(row.getUnitPrice())
+                        .build());
+            }
+        }
+
+        return OrderDetailsResponse.builder()
+                .orderId(first.getOrderId())
+                .customerId(first.getCustomerId())
+                .status(first.getStatus())
+                .reason(first.getReason())
+                .paymentReference(first.getPaymentReference())
+                .items(items)
+                .shippingAddress(ShippingAddressRequest.builder()
+                        .street(first.getStreet())
+                        .city(first.getCity())
+                        .state(first.getState())
+                        .zipCode(first.getZipCode())
+                        .country(first.getCountry())
+                        .build())
+                .build();
+    }
+}
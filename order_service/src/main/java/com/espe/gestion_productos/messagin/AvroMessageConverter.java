@@ -0,0 +1,82 @@
+package com.espe.gestion_productos.messagin;
+
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.AbstractMessageConverter;
+import org.springframework.amqp.support.converter.DefaultJacksonJavaTypeMapper;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import tools.jackson.core.JacksonException;
+import tools.jackson.dataformat.avro.AvroMapper;
+import tools.jackson.dataformat.avro.AvroSchema;
+
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Avro binary encoding for the event classes it is given.
+ * The schema is derived from the class, so producer and consumer only have to share
+ * the event class; field names are not repeated in every message as they are in JSON.
+ */
+public class AvroMessageConverter extends AbstractMessageConverter {
+
+    public static final String CONTENT_TYPE = "application/avro";
+
+    private final AvroMapper avroMapper = new AvroMapper();
+    private final Map<String, Class<?>> types;
+    private final Map<Class<?>, AvroSchema> schemas;
+
+    public AvroMessageConverter(Class<?>... supportedTypes) {
+        this.types = Stream.of(supportedTypes)
+                .collect(Collectors.toUnmodifiableMap(Class::getName, Function.identity()));
+        this.schemas = Stream.of(supportedTypes)
+                .collect(Collectors.toUnmodifiableMap(Function.identity(), avroMapper::schemaFor));
+    }
+
+    @Override
+    protected Message createMessage(Object object, MessageProperties messageProperties) {
+        AvroSchema schema = schemas.get(object.getClass());
+        if (schema == null) {
+            throw new MessageConversionException("No Avro schema registered for " + object.getClass().getName());
+        }
+
+        byte[] body;
+        try {
+            body = avroMapper.writer(schema).writeValueAsBytes(object);
+        } catch (JacksonException e) {
+            throw new MessageConversionException("Failed to encode " + object.getClass().getName() + " as Avro", e);
+        }
+        messageProperties.setContentType(CONTENT_TYPE);
+        messageProperties.setContentLength(body.length);
+        messageProperties.setHeader(DefaultJacksonJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, object.getClass().getName());
+        return new Message(body, messageProperties);
+    }
+
+    @Override
+    public Object fromMessage(Message message) {
+        Class<?> type = resolveType(message.getMessageProperties());
+        try {
+            return avroMapper.readerFor(type).with(schemas.get(type)).readValue(message.getBody());
+        } catch (JacksonException e) {
+            throw new MessageConversionException("Failed to decode Avro message as " + type.getName(), e);
+        }
+    }
+
+    // The type header wins; otherwise fall back to the listener parameter type
+    private Class<?> resolveType(MessageProperties properties) {
+        Object typeId = properties.getHeader(DefaultJacksonJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME);
+        Class<?> type = typeId != null ? types.get(typeId.toString()) : null;
+        if (type == null) {
+            Type inferred = properties.getInferredArgumentType();
+            if (inferred instanceof Class<?> inferredClass && schemas.containsKey(inferredClass)) {
+                type = inferredClass;
+            }
+        }
+        if (type == null) {
+            throw new MessageConversionException("Unsupported Avro message type: " + typeId);
+        }
+        return type;
+    }
+}
@@ -0,0 +1,217 @@
+package com.espe.gestion_productos.messagin;
+
+import com.espe.gestion_productos.config.RabbitMQConfig;
+import com.espe.gestion_productos.dto.ParkedMessageResponse;
+import com.espe.gestion_productos.dto.ReplayParkedResponse;
+import com.espe.gestion_productos.enums.EventType;
+import com.espe.gestion_productos.services.OrderSagaMetrics;
+import com.rabbitmq.client.GetResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.DefaultMessagePropertiesConverter;
+import org.springframework.amqp.rabbit.support.MessagePropertiesConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Takes over inventory responses that could not be applied, instead of requeueing them straight
+ * back to a consumer. A failed message is republished to the retry queue for its attempt (see
+ * RabbitMQConfig.inventoryResponseRetryQueues), which dead-letters it back to the response queue
+ * once the delay has passed; after order.inventory-response.retry.max-attempts, or right away when
+ * it cannot be read, it is parked in the parking-lot queue until it is replayed.
+ */
+@Component
+@Slf4j
+public class InventoryResponseRecoverer {
+
+    public static final String RETRY_ATTEMPT_HEADER = "x-retry-attempt";
+    public static final String LAST_ERROR_HEADER = "x-last-error";
+    public static final String PARKED_REASON_HEADER = "x-parked-reason";
+    public static final String PARKED_AT_HEADER = "x-parked-at";
+
+    static final int MAX_ADMIN_BATCH = 1000;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final RabbitTemplate rabbitTemplate;
+    private final OrderSagaMetrics sagaMetrics;
+    private final long[] delaysMs;
+    private final int maxAttempts;
+    private final long confirmTimeoutMs;
+    private final MessagePropertiesConverter propertiesConverter = new DefaultMessagePropertiesConverter();
+
+    public InventoryResponseRecoverer(RabbitTemplate rabbitTemplate,
+                                      OrderSagaMetrics sagaMetrics,
+                                      @Value("${order.inventory-response.retry.delays-ms:1000,5000,30000,120000}") long[] delaysMs,
+                                      @Value("${order.inventory-response.retry.max-attempts:6}") int maxAttempts,
+                                      @Value("${order.inventory-response.retry.confirm-timeout-ms:5000}") long confirmTimeoutMs) {
+        if (delaysMs.length == 0) {
+            throw new IllegalArgumentException("order.inventory-response.retry.delays-ms needs at least one delay");
+        }
+        this.rabbitTemplate = rabbitTemplate;
+        this.sagaMetrics = sagaMetrics;
+        this.delaysMs = delaysMs;
+        this.maxAttempts = maxAttempts;
+        this.confirmTimeoutMs = confirmTimeoutMs;
+    }
+
+    /**
+     * Schedules another attempt, with the next delay in order.inventory-response.retry.delays-ms
+     * (the last one repeats), or parks the message once its attempts are used up. Returns once the
+     * broker has confirmed the copy, so the original can be acked.
+     */
+    public void retryOrPark(Message message, EventType eventType, String error) {
+        MessageProperties properties = message.getMessageProperties();
+        int attempt = retryAttempt(properties) + 1;
+        if (attempt > maxAttempts) {
+            park(message, eventType, "Gave up after " + maxAttempts + " retries: " + error);
+            return;
+        }
+
+        long delayMs = delaysMs[Math.min(attempt, delaysMs.length) - 1];
+        properties.setHeader(RETRY_ATTEMPT_HEADER, attempt);
+        properties.setHeader(LAST_ERROR_HEADER, truncate(error));
+        publishConfirmed(RabbitMQConfig.inventoryResponseRetryQueue(delayMs), message);
+        sagaMetrics.countEvent(eventType, OrderSagaMetrics.OUTCOME_RETRIED);
+        log.warn("Inventory response not applied (attempt {} of {}), retrying in {} ms: {}",
+                attempt, maxAttempts, delayMs, error);
+    }
+
+    public void park(Message message, EventType eventType, String reason) {
+        MessageProperties properties = message.getMessageProperties();
+        properties.setHeader(PARKED_REASON_HEADER, truncate(reason));
+        properties.setHeader(PARKED_AT_HEADER, System.currentTimeMillis());
+        publishConfirmed(RabbitMQConfig.INVENTORY_RESPONSE_PARKING_LOT_QUEUE, message);
+        sagaMetrics.countEvent(eventType, OrderSagaMetrics.OUTCOME_PARKED);
+        log.error("Inventory response parked: {}", reason);
+    }
+
+    // Messages are taken unacked and then put back, so they stay parked
+    public List<ParkedMessageResponse> peekParked(int limit) {
+        validateLimit(limit);
+        return rabbitTemplate.execute(channel -> {
+            List<ParkedMessageResponse> parked = new ArrayList<>();
+            List<Long> deliveryTags = new ArrayList<>();
+            GetResponse response;
+            while (parked.size() < limit
+                    && (response = channel.basicGet(RabbitMQConfig.INVENTORY_RESPONSE_PARKING_LOT_QUEUE, false)) != null) {
+                deliveryTags.add(response.getEnvelope().getDeliveryTag());
+                parked.add(toParkedMessage(toMessage(response)));
+            }
+            // One nack per message: not every broker honours multiple for messages taken with basic.get
+            for (long deliveryTag : deliveryTags) {
+                channel.basicNack(deliveryTag, false, true);
+            }
+            return parked;
+        });
+    }
+
+    /**
+     * Moves up to limit parked messages back to the response queue with their attempts reset. Each
+     * one is acked only after its copy is confirmed; on a failure the message stays parked and the
+     * replay stops.
+     */
+    public ReplayParkedResponse replayParked(int limit) {
+        validateLimit(limit);
+        return rabbitTemplate.execute(channel -> {
+            int replayed = 0;
+            GetResponse response;
+            while (replayed < limit
+                    && (response = channel.basicGet(RabbitMQConfig.INVENTORY_RESPONSE_PARKING_LOT_QUEUE, false)) != null) {
+                long deliveryTag = response.getEnvelope().getDeliveryTag();
+                Message message = toMessage(response);
+                MessageProperties properties = message.getMessageProperties();
+                properties.getHeaders().remove(RETRY_ATTEMPT_HEADER);
+                properties.getHeaders().remove(PARKED_REASON_HEADER);
+                properties.getHeaders().remove(PARKED_AT_HEADER);
+                try {
+                    publishConfirmed(RabbitMQConfig.INVENTORY_RESPONSE_QUEUE, message);
+                } catch (AmqpException e) {
+                    channel.basicNack(deliveryTag, false, true);
+                    throw e;
+                }
+                channel.basicAck(deliveryTag, false);
+                replayed++;
+            }
+            log.info("Replayed {} parked inventory responses", replayed);
+            return new ReplayParkedResponse(replayed,
+                    channel.messageCount(RabbitMQConfig.INVENTORY_RESPONSE_PARKING_LOT_QUEUE));
+        });
+    }
+
+    // Through the default exchange straight to the queue; waits for the confirm so the caller can ack the source
+    private void publishConfirmed(String queue, Message message) {
+        message.getMessageProperties().setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        CorrelationData correlationData = new CorrelationData(UUID.randomUUID().toString());
+        rabbitTemplate.send("", queue, message, correlationData);
+
+        CorrelationData.Confirm confirm;
+        try {
+            confirm = correlationData.getFuture().get(confirmTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted waiting for the publisher confirm from " + queue, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new AmqpException("No publisher confirm from " + queue, e);
+        }
+        if (!confirm.ack() || correlationData.getReturned() != null) {
+            throw new AmqpException("Broker did not accept the message for " + queue
+                    + (confirm.reason() != null ? ": " + confirm.reason() : ""));
+        }
+    }
+
+    private Message toMessage(GetResponse response) {
+        MessageProperties properties = propertiesConverter.toMessageProperties(
+                response.getProps(), response.getEnvelope(), StandardCharsets.UTF_8.name());
+        return new Message(response.getBody(), properties);
+    }
+
+    private ParkedMessageResponse toParkedMessage(Message message) {
+        MessageProperties properties = message.getMessageProperties();
+        String contentType = properties.getContentType();
+        boolean text = contentType != null && contentType.contains("json");
+        Object reason = properties.getHeader(PARKED_REASON_HEADER);
+        Object parkedAt = properties.getHeader(PARKED_AT_HEADER);
+        return ParkedMessageResponse.builder()
+                .messageId(properties.getMessageId())
+                .attempts(retryAttempt(properties))
+                .reason(reason != null ? reason.toString() : null)
+                .parkedAt(parkedAt instanceof Number millis ? Instant.ofEpochMilli(millis.longValue()) : null)
+                .contentType(contentType)
+                .payload(text
+                        ? new String(message.getBody(), StandardCharsets.UTF_8)
+                        : Base64.getEncoder().encodeToString(message.getBody()))
+                .build();
+    }
+
+    private static int retryAttempt(MessageProperties properties) {
+        return properties.getHeader(RETRY_ATTEMPT_HEADER) instanceof Number attempt ? attempt.intValue() : 0;
+    }
+
+    private static String truncate(String value) {
+        if (value == null || value.length() <= MAX_ERROR_LENGTH) {
+            return value;
+        }
+        return value.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static void validateLimit(int limit) {
+        if (limit < 1 || limit > MAX_ADMIN_BATCH) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_ADMIN_BATCH);
+        }
+    }
+}
@@ -1,37 +1,256 @@
 package com.espe.gestion_productos.messagin;
 
+import com.espe.gestion_productos.config.RabbitMQConfig;
 import com.espe.gestion_productos.enums.EventType;
 import com.espe.gestion_productos.enums.OrderStatus;
-import com.espe.gestion_productos.models.Order;
+import com.espe.gestion_productos.mappers.OrderMapper;
 import com.espe.gestion_productos.repositories.OrderRepository;
-import lombok.RequiredArgsConstructor;
+import com.espe.gestion_productos.services.OrderSagaMetrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class OrderConsumer {
 
+    private static final String STOCK_REJECTED_REASON = "Stock not available for requested items";
+    private static final String STOCK_COMMIT_FAILED_REASON = "Stock reservation expired before it was committed";
+
     private final OrderRepository orderRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderSagaMetrics sagaMetrics;
+    private final MessageConverter messageConverter;
+    private final InventoryResponseRecoverer recoverer;
+    private final OrderProducer orderProducer;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderConsumer(OrderRepository orderRepository,
+                         ApplicationEventPublisher eventPublisher,
+                         OrderSagaMetrics sagaMetrics,
+                         MessageConverter messageConverter,
+                         InventoryResponseRecoverer recoverer,
+                         OrderProducer orderProducer,
+                         PlatformTransactionManager transactionManager) {
+        this.orderRepository = orderRepository;
+        this.eventPublisher = eventPublisher;
+        this.sagaMetrics = sagaMetrics;
+        this.messageConverter = messageConverter;
+        this.recoverer = recoverer;
+        this.orderProducer = orderProducer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
-    @RabbitListener(queues = "order.inventory.response.queue")
-    public void handleInventoryResponse(OrderEvent event) {
-        log.info("Received inventory response event for orderId: {}, eventType: {}", event.getOrderId(), event.getEventType());
+    // The batch is acked once it is applied and every message that could not be is handed to the
+    // recoverer (delayed retry or parking lot); only a failure to republish requeues the batch
+    @RabbitListener(queues = RabbitMQConfig.INVENTORY_RESPONSE_QUEUE, containerFactory = "inventoryResponseListenerContainerFactory")
+    public void handleInventoryResponses(List<Message> messages) {
+        log.info("Received batch of {} inventory response events", messages.size());
 
-        Order order = orderRepository.findById(event.getOrderId())
-                .orElseThrow(() -> new RuntimeException("Order not found: " + event.getOrderId()));
+        List<InventoryResponse> responses = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            InventoryResponse response = read(message);
+            if (response != null) {
+                responses.add(response);
+            }
+        }
+        if (responses.isEmpty()) {
+            return;
+        }
+
+        Set<UUID> missing;
+        try {
+            missing = transactionTemplate.execute(status -> applyResponses(responses));
+        } catch (RuntimeException e) {
+            // Apply one by one so a single failing response does not hold back the rest of the batch
+            log.warn("Batch of {} inventory responses failed, applying them one at a time", responses.size(), e);
+            for (InventoryResponse response : responses) {
+                try {
+                    retryUnknownOrders(List.of(response),
+                            transactionTemplate.execute(status -> applyResponses(List.of(response))));
+                } catch (RuntimeException responseFailure) {
+                    recoverer.retryOrPark(response.message(), response.event().getEventType(),
+                            String.valueOf(responseFailure.getMessage()));
+                }
+            }
+            return;
+        }
+        retryUnknownOrders(responses, missing);
+    }
+
+    private InventoryResponse read(Message message) {
+        OrderEvent event;
+        try {
+            // No generic parameter to infer the payload type from, as a List<OrderEvent> listener had
+            message.getMessageProperties().setInferredArgumentType(OrderEvent.class);
+            event = (OrderEvent) messageConverter.fromMessage(message);
+        } catch (MessageConversionException | ClassCastException e) {
+            recoverer.park(message, null, "Unreadable message: " + e.getMessage());
+            return null;
+        }
 
-        if (event.getEventType() == EventType.STOCK_RESERVED) {
-            order.setStatus(OrderStatus.CONFIRMED);
-            log.info("Order confirmed - Stock reserved for orderId: {}", event.getOrderId());
-        } else if (event.getEventType() == EventType.STOCK_REJECTED) {
-            order.setStatus(OrderStatus.CANCELLED);
-            order.setReason("Stock not available for requested items");
-            log.info("Order cancelled - Stock rejected for orderId: {}", event.getOrderId());
+        sagaMetrics.recordBrokerDwell(event.getTimestamp());
+        if (event.getEventType() != EventType.STOCK_RESERVED && event.getEventType() != EventType.STOCK_REJECTED
+                && event.getEventType() != EventType.STOCK_COMMIT_FAILED) {
+            log.warn("Ignoring unexpected event type {} for orderId: {}", event.getEventType(), event.getOrderId());
+            sagaMetrics.countEvent(event.getEventType(), OrderSagaMetrics.OUTCOME_IGNORED);
+            return null;
         }
+        UUID orderId = OrderMapper.toUuid(event.getOrderId());
+        if (orderId == null) {
+            log.warn("Inventory response referenced an invalid orderId: {}", event.getOrderId());
+            sagaMetrics.countEvent(event.getEventType(), OrderSagaMetrics.OUTCOME_UNKNOWN_ORDER);
+            recoverer.park(message, event.getEventType(), "Invalid orderId: " + event.getOrderId());
+            return null;
+        }
+        return new InventoryResponse(message, event, orderId);
+    }
+
+    // Returns the orders the responses referenced that do not exist (yet)
+    private Set<UUID> applyResponses(List<InventoryResponse> received) {
+        // The first response for an order within the batch wins, later ones are duplicates
+        Map<UUID, EventType> responses = new LinkedHashMap<>();
+        for (InventoryResponse response : received) {
+            if (responses.putIfAbsent(response.orderId(), response.event().getEventType()) != null) {
+                log.info("Duplicate inventory response in batch for orderId: {}", response.orderId());
+                sagaMetrics.countEvent(response.event().getEventType(), OrderSagaMetrics.OUTCOME_DUPLICATE);
+            }
+        }
+
+        Set<UUID> reserved = new LinkedHashSet<>();
+        Set<UUID> rejected = new LinkedHashSet<>();
+        Set<UUID> commitFailed = new LinkedHashSet<>();
+        responses.forEach((orderId, eventType) -> (switch (eventType) {
+            case STOCK_RESERVED -> reserved;
+            case STOCK_COMMIT_FAILED -> commitFailed;
+            default -> rejected;
+        }).add(orderId));
+
+        Set<UUID> notApplied = new HashSet<>();
+        List<UUID> confirmed = List.of();
+        if (!reserved.isEmpty()) {
+            confirmed = transition(reserved, OrderStatus.CONFIRMED, null, EventType.STOCK_RESERVED);
+            log.info("Orders confirmed - Stock reserved for {} of {} orders", confirmed.size(), reserved.size());
+            // Inventory releases reservations that are never committed once they expire
+            orderProducer.enqueueStockEvents(confirmed, EventType.STOCK_COMMIT);
+            notApplied.addAll(reserved);
+            confirmed.forEach(notApplied::remove);
+        }
+        if (!rejected.isEmpty()) {
+            List<UUID> cancelled = transition(rejected, OrderStatus.CANCELLED, STOCK_REJECTED_REASON, EventType.STOCK_REJECTED);
+            log.info("Orders cancelled - Stock rejected for {} of {} orders", cancelled.size(), rejected.size());
+            notApplied.addAll(rejected);
+            cancelled.forEach(notApplied::remove);
+        }
+        if (!commitFailed.isEmpty()) {
+            List<UUID> cancelled = cancelUncommitted(commitFailed);
+            log.warn("Orders cancelled - Stock commit failed for {} of {} orders", cancelled.size(), commitFailed.size());
+            notApplied.addAll(commitFailed);
+            cancelled.forEach(notApplied::remove);
+        }
+        releaseCancelledReservations(received, confirmed);
+
+        Set<UUID> missing = new HashSet<>(notApplied);
+        if (!notApplied.isEmpty()) {
+            orderRepository.findExistingOrderIds(notApplied).forEach(missing::remove);
+            if (notApplied.size() > missing.size()) {
+                log.info("Skipped {} stale or duplicate inventory responses for orders no longer PENDING",
+                        notApplied.size() - missing.size());
+            }
+            if (!missing.isEmpty()) {
+                log.warn("Inventory responses referenced unknown orders, retrying them later: {}", missing);
+            }
+            notApplied.forEach(orderId -> sagaMetrics.countEvent(responses.get(orderId),
+                    missing.contains(orderId) ? OrderSagaMetrics.OUTCOME_UNKNOWN_ORDER : OrderSagaMetrics.OUTCOME_STALE));
+        }
+        return missing;
+    }
+
+    // A STOCK_RESERVED that lost to a rejection in the batch or arrived after the order was cancelled
+    // (a redelivered order, or one cancelled because its event could not be published) still holds
+    // stock in inventory: give it back
+    private void releaseCancelledReservations(List<InventoryResponse> received, Collection<UUID> confirmed) {
+        Set<UUID> reservedFor = new HashSet<>();
+        for (InventoryResponse response : received) {
+            if (response.event().getEventType() == EventType.STOCK_RESERVED) {
+                reservedFor.add(response.orderId());
+            }
+        }
+        confirmed.forEach(reservedFor::remove);
+        if (reservedFor.isEmpty()) {
+            return;
+        }
+
+        List<UUID> cancelled = orderRepository.findOrderIdsByStatus(reservedFor, OrderStatus.CANCELLED);
+        if (!cancelled.isEmpty()) {
+            log.info("Releasing stock reserved for {} cancelled orders", cancelled.size());
+            orderProducer.enqueueStockEvents(cancelled, EventType.STOCK_RELEASE);
+        }
+    }
+
+    // The reservation expired and its stock was sold before the commit reached inventory: the confirmed
+    // order cannot be fulfilled. Inventory left the order's reservations untouched, so the lines that
+    // are still reserved are given back
+    private List<UUID> cancelUncommitted(Set<UUID> orderIds) {
+        List<UUID> cancelled = orderRepository.cancelConfirmed(orderIds, STOCK_COMMIT_FAILED_REASON).stream()
+                .map(OrderRepository.TransitionedOrder::getOrderId)
+                .toList();
+        sagaMetrics.countEvents(EventType.STOCK_COMMIT_FAILED, OrderSagaMetrics.OUTCOME_APPLIED, cancelled.size());
+        publishStatusChanged(cancelled, OrderStatus.CANCELLED, STOCK_COMMIT_FAILED_REASON);
+        orderProducer.enqueueStockEvents(cancelled, EventType.STOCK_RELEASE);
+        return cancelled;
+    }
+
+    // Responses for orders not found are retried later instead of dropped, and parked after the last attempt
+    private void retryUnknownOrders(List<InventoryResponse> responses, Set<UUID> missing) {
+        if (missing == null || missing.isEmpty()) {
+            return;
+        }
+        for (InventoryResponse response : responses) {
+            if (missing.contains(response.orderId())) {
+                recoverer.retryOrPark(response.message(), response.event().getEventType(),
+                        "Order not found: " + response.orderId());
+            }
+        }
+    }
+
+    private List<UUID> transition(Set<UUID> orderIds, OrderStatus status, String reason, EventType eventType) {
+        List<OrderRepository.TransitionedOrder> transitioned =
+                orderRepository.transitionFromPending(orderIds, status.name(), reason);
+        List<UUID> applied = new ArrayList<>(transitioned.size());
+        for (OrderRepository.TransitionedOrder order : transitioned) {
+            applied.add(order.getOrderId());
+            sagaMetrics.recordPendingToFinal(status, order.getCreatedAt());
+        }
+        sagaMetrics.countEvents(eventType, OrderSagaMetrics.OUTCOME_APPLIED, applied.size());
+        publishStatusChanged(applied, status, reason);
+        return applied;
+    }
+
+    // Listeners (details cache, status subscribers) only run once this transaction has committed
+    private void publishStatusChanged(List<UUID> orderIds, OrderStatus status, String reason) {
+        if (!orderIds.isEmpty()) {
+            List<String> ids = orderIds.stream().map(UUID::toString).toList();
+            eventPublisher.publishEvent(new OrderStatusChangedEvent(ids, status, reason));
+        }
+    }
 
-        orderRepository.save(order);
+    private record InventoryResponse(Message message, OrderEvent event, UUID orderId) {
     }
 }
@@ -20,7 +20,7 @@ public class OrderEvent implements Serializable {
     private String customerId;
     private EventType eventType;
     private List<OrderItemEvent> items;
-    private String shippingAddressJson;
+    private ShippingAddressEvent shippingAddress;
     private long timestamp;
 
     @Data
@@ -32,4 +32,16 @@ public class OrderEvent implements Serializable {
         private int quantity;
         private double unitPrice;
     }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ShippingAddressEvent implements Serializable {
+        private String street;
+        private String city;
+        private String state;
+        private String zipCode;
+        private String country;
+    }
 }
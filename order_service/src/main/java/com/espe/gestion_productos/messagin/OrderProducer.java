@@ -1,54 +1,226 @@
 package com.espe.gestion_productos.messagin;
 
+import com.espe.gestion_productos.config.RabbitMQConfig;
 import com.espe.gestion_productos.enums.EventType;
 import com.espe.gestion_productos.models.Order;
-import lombok.RequiredArgsConstructor;
+import com.espe.gestion_productos.models.OutboxEvent;
+import com.espe.gestion_productos.repositories.OutboxEventRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.core.ReturnedMessage;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.DefaultJacksonJavaTypeMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class OrderProducer {
 
     private final RabbitTemplate rabbitTemplate;
-    private final tools.jackson.databind.ObjectMapper objectMapper;
+    private final OutboxEventRepository outboxEventRepository;
+    private final Semaphore inFlight;
+    private final Timer confirmLatency;
+    private final Timer publishWait;
 
-    public void publishOrderCreatedEvent(Order order) {
+    // application/json (default, what inventory-service reads) or application/avro; see RabbitMQConfig.messageConverter
+    @Value("${order.messaging.content-type:application/json}")
+    private String eventContentType;
+
+    public OrderProducer(RabbitTemplate rabbitTemplate,
+                         OutboxEventRepository outboxEventRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${order.outbox.relay.max-in-flight:1000}") int maxInFlight) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.outboxEventRepository = outboxEventRepository;
+        this.inFlight = new Semaphore(maxInFlight);
+
+        Gauge.builder("order.outbox.in_flight", inFlight, permits -> maxInFlight - permits.availablePermits())
+                .description("Outbox events sent and waiting for their publisher confirm")
+                .register(meterRegistry);
+        this.confirmLatency = Timer.builder("order.outbox.confirm.latency")
+                .description("Time from sending an outbox event to its publisher confirm")
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.publishWait = Timer.builder("order.rabbit.publish.wait")
+                .description("Time a send blocks: checking out a publisher channel and writing to a possibly blocked connection")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // Runs inside the caller's transaction so the event is only visible once the order commits
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueOrderCreatedEvent(Order order) {
         try {
-            List<OrderEvent.OrderItemEvent> items = order.getItems().stream()
-                    .map(item -> OrderEvent.OrderItemEvent.builder()
-                            .productId(item.getProductId())
-                            .quantity(item.getQuantity())
-                            .unitPrice(item.getUnitPrice())
-                            .build())
-                    .collect(Collectors.toList());
-
-            String shippingAddressJson = objectMapper.writeValueAsString(order.getShippingAddress());
-
-            OrderEvent event = OrderEvent.builder()
-                    .orderId(order.getOrderId())
-                    .customerId(order.getCustomerId())
+            OrderEvent event = buildOrderCreatedEvent(order);
+            MessageProperties properties = new MessageProperties();
+            properties.setContentType(eventContentType);
+            Message message = rabbitTemplate.getMessageConverter().toMessage(event, properties);
+
+            outboxEventRepository.save(OutboxEvent.builder()
+                    .aggregateId(order.getOrderId())
                     .eventType(EventType.ORDER_CREATED)
-                    .items(items)
-                    .shippingAddressJson(shippingAddressJson)
-                    .timestamp(System.currentTimeMillis())
-                    .build();
-
-            rabbitTemplate.convertAndSend(
-                    "order.exchange",
-                    "order.created",
-                    event
-            );
+                    .exchange(RabbitMQConfig.ORDER_EXCHANGE)
+                    .routingKey(RabbitMQConfig.ORDER_ROUTING_KEY)
+                    .contentType(message.getMessageProperties().getContentType())
+                    .typeId(message.getMessageProperties().getHeader(DefaultJacksonJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME))
+                    .payload(message.getBody())
+                    .build());
 
-            log.info("Order created event published for orderId: {}", order.getOrderId());
+            log.info("Order created event enqueued in outbox for orderId: {}", order.getOrderId());
         } catch (Exception e) {
-            log.error("Error publishing order created event for orderId: {}", order.getOrderId(), e);
-            throw new RuntimeException("Failed to publish order created event", e);
+            log.error("Error enqueuing order created event for orderId: {}", order.getOrderId(), e);
+            throw new RuntimeException("Failed to enqueue order created event", e);
+        }
+    }
+
+    /**
+     * Tells inventory to commit (order confirmed) or release (order cancelled) the stock it reserved
+     * for each order. Same outbox and transaction rules as enqueueOrderCreatedEvent; inventory applies
+     * them idempotently, so a repeated event is harmless.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueueStockEvents(Collection<UUID> orderIds, EventType eventType) {
+        String routingKey = switch (eventType) {
+            case STOCK_COMMIT -> RabbitMQConfig.STOCK_COMMIT_ROUTING_KEY;
+            case STOCK_RELEASE -> RabbitMQConfig.STOCK_RELEASE_ROUTING_KEY;
+            default -> throw new IllegalArgumentException("Not a stock event type: " + eventType);
+        };
+        if (orderIds.isEmpty()) {
+            return;
+        }
+
+        long timestamp = System.currentTimeMillis();
+        List<OutboxEvent> events = orderIds.stream()
+                .map(orderId -> {
+                    OrderEvent event = OrderEvent.builder()
+                            .orderId(orderId.toString())
+                            .eventType(eventType)
+                            .timestamp(timestamp)
+                            .build();
+                    MessageProperties properties = new MessageProperties();
+                    properties.setContentType(eventContentType);
+                    Message message = rabbitTemplate.getMessageConverter().toMessage(event, properties);
+                    return OutboxEvent.builder()
+                            .aggregateId(orderId)
+                            .eventType(eventType)
+                            .exchange(RabbitMQConfig.ORDER_EXCHANGE)
+                            .routingKey(routingKey)
+                            .contentType(message.getMessageProperties().getContentType())
+                            .typeId(message.getMessageProperties().getHeader(DefaultJacksonJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME))
+                            .payload(message.getBody())
+                            .build();
+                })
+                .toList();
+        outboxEventRepository.saveAll(events);
+        log.info("{} {} events enqueued in outbox", events.size(), eventType);
+    }
+
+    public OrderEvent buildOrderCreatedEvent(Order order) {
+        List<OrderEvent.OrderItemEvent> items = order.getItems().stream()
+                .map(item -> OrderEvent.OrderItemEvent.builder()
+                        .productId(item.getProductId().toString())
+                        .quantity(item.getQuantity())
+                        .unitPrice(item.getUnitPrice())
+                        .build())
+                .collect(Collectors.toList());
+
+        OrderEvent.ShippingAddressEvent shippingAddress = OrderEvent.ShippingAddressEvent.builder()
+                .street(order.getShippingAddress().getStreet())
+                .city(order.getShippingAddress().getCity())
+                .state(order.getShippingAddress().getState())
+                .zipCode(order.getShippingAddress().getZipCode())
+                .country(order.getShippingAddress().getCountry())
+                .build();
+
+        return OrderEvent.builder()
+                .orderId(order.getOrderId().toString())
+                .customerId(order.getCustomerId().toString())
+                .eventType(EventType.ORDER_CREATED)
+                .items(items)
+                .shippingAddress(shippingAddress)
+                .timestamp(System.currentTimeMillis())
+                .build();
+    }
+
+    /**
+     * Sends one outbox event without waiting for the broker: the returned future completes from the
+     * publisher confirm callback, with the failure reason if the broker nacked it, returned it as
+     * unroutable or the send itself failed. At most order.outbox.relay.max-in-flight events are
+     * unconfirmed at a time; callers check {@link #availableInFlightSlots()} before claiming more.
+     */
+    public CompletableFuture<PublishConfirm> publishAsync(OutboxEvent outboxEvent) {
+        if (!inFlight.tryAcquire()) {
+            throw new IllegalStateException("Publisher confirm window is full");
+        }
+
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(outboxEvent.getContentType());
+        properties.setMessageId(outboxEvent.getId().toString());
+        if (outboxEvent.getTypeId() != null) {
+            properties.setHeader(DefaultJacksonJavaTypeMapper.DEFAULT_CLASSID_FIELD_NAME, outboxEvent.getTypeId());
+        }
+
+        long sentAt = System.nanoTime();
+        CorrelationData correlationData = new CorrelationData(outboxEvent.getId().toString());
+        try {
+            rabbitTemplate.send(
+                    outboxEvent.getExchange(),
+                    outboxEvent.getRoutingKey(),
+                    new Message(outboxEvent.getPayload(), properties),
+                    correlationData
+            );
+            publishWait.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+        } catch (RuntimeException e) {
+            publishWait.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+            inFlight.release();
+            return CompletableFuture.completedFuture(
+                    new PublishConfirm(outboxEvent, "Send failed: " + e.getMessage()));
+        }
+
+        // With publisher returns enabled the returned message is set before the confirm completes
+        return correlationData.getFuture().handle((confirm, error) -> {
+            inFlight.release();
+            confirmLatency.record(System.nanoTime() - sentAt, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                return new PublishConfirm(outboxEvent, "Confirm failed: " + error.getMessage());
+            }
+            if (!confirm.ack()) {
+                return new PublishConfirm(outboxEvent, "Nacked by broker: " + confirm.reason());
+            }
+            ReturnedMessage returned = correlationData.getReturned();
+            if (returned != null) {
+                return new PublishConfirm(outboxEvent, "Returned as unroutable: " + returned.getReplyText());
+            }
+            return new PublishConfirm(outboxEvent, null);
+        });
+    }
+
+    public int availableInFlightSlots() {
+        return inFlight.availablePermits();
+    }
+
+    // failure is null when the broker acknowledged a routed message
+    public record PublishConfirm(OutboxEvent event, String failure) {
+
+        public boolean delivered() {
+            return failure == null;
         }
     }
 }
@@ -0,0 +1,17 @@
+package com.espe.gestion_productos.messagin;
+
+import com.espe.gestion_productos.enums.OrderStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Collection;
+
+// In-process application event, published once per status and batch when orders leave PENDING
+@Data
+@AllArgsConstructor
+public class OrderStatusChangedEvent {
+
+    private Collection<String> orderIds;
+    private OrderStatus status;
+    private String reason;
+}
@@ -0,0 +1,205 @@
+package com.espe.gestion_productos.messagin;
+
+import com.espe.gestion_productos.enums.EventType;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.models.OutboxEvent;
+import com.espe.gestion_productos.repositories.OrderRepository;
+import com.espe.gestion_productos.repositories.OutboxEventRepository;
+import com.espe.gestion_productos.services.OrderSagaMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Drains the order_outbox table with asynchronous publisher confirms. Each run claims due PENDING
+ * events (marking them IN_FLIGHT in a short transaction), sends them without waiting and returns;
+ * confirms are collected from the callbacks and settled in batches: acknowledged events are
+ * deleted, nacked or unroutable ones go back to PENDING with an exponential backoff, and after
+ * order.outbox.relay.max-attempts they are parked as FAILED and their order is cancelled.
+ * A run claims no more events than the producer's in-flight window has room for.
+ */
+@Component
+@ConditionalOnProperty(name = "order.outbox.relay.enabled", havingValue = "true", matchIfMissing = true)
+@Slf4j
+public class OutboxRelay {
+
+    static final String PUBLISH_FAILED_REASON = "Order could not be sent to inventory";
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderRepository orderRepository;
+    private final OrderProducer orderProducer;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderSagaMetrics sagaMetrics;
+    private final int batchSize;
+    private final Duration confirmTimeout;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final Duration maxRetryBackoff;
+
+    private final Queue<OrderProducer.PublishConfirm> confirms = new ConcurrentLinkedQueue<>();
+    private final AtomicLong lagMillis = new AtomicLong();
+    private final DistributionSummary batchSizeSummary;
+    private final Timer publishTimer;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       OrderRepository orderRepository,
+                       OrderProducer orderProducer,
+                       ApplicationEventPublisher eventPublisher,
+                       PlatformTransactionManager transactionManager,
+                       MeterRegistry meterRegistry,
+                       OrderSagaMetrics sagaMetrics,
+                       @Value("${order.outbox.relay.batch-size:200}") int batchSize,
+                       @Value("${order.outbox.relay.confirm-timeout-ms:5000}") long confirmTimeoutMs,
+                       @Value("${order.outbox.relay.max-attempts:10}") int maxAttempts,
+                       @Value("${order.outbox.relay.retry-backoff-ms:1000}") long retryBackoffMs,
+                       @Value("${order.outbox.relay.max-retry-backoff-ms:60000}") long maxRetryBackoffMs) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.orderRepository = orderRepository;
+        this.orderProducer = orderProducer;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.sagaMetrics = sagaMetrics;
+        this.batchSize = batchSize;
+        this.confirmTimeout = Duration.ofMillis(confirmTimeoutMs);
+        this.maxAttempts = maxAttempts;
+        this.retryBackoff = Duration.ofMillis(retryBackoffMs);
+        this.maxRetryBackoff = Duration.ofMillis(maxRetryBackoffMs);
+
+        Gauge.builder("order.outbox.lag", lagMillis, AtomicLong::get)
+                .description("Age of the oldest outbox event claimed by the last relay run")
+                .baseUnit("milliseconds")
+                .register(meterRegistry);
+        this.batchSizeSummary = DistributionSummary.builder("order.outbox.batch.size")
+                .description("Outbox events claimed per relay batch")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.publishTimer = Timer.builder("order.outbox.publish")
+                .description("Time to hand a claimed batch to the broker, without waiting for confirms")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${order.outbox.relay.interval-ms:200}")
+    public void relay() {
+        settle();
+        Integer released = transactionTemplate.execute(status ->
+                outboxEventRepository.releaseStaleClaims(Instant.now().minus(confirmTimeout)));
+        if (released != null && released > 0) {
+            log.warn("Outbox relay: {} events had no confirm after {}, they will be retried", released, confirmTimeout);
+            sagaMetrics.countEvents(EventType.ORDER_CREATED, OrderSagaMetrics.OUTCOME_UNCONFIRMED, released);
+        }
+
+        int claimed;
+        do {
+            claimed = relayBatch();
+        } while (claimed == batchSize);
+    }
+
+    // Confirms usually arrive within milliseconds; settle them more often than new batches are claimed
+    @Scheduled(fixedDelayString = "${order.outbox.relay.settle-interval-ms:50}")
+    public void settle() {
+        List<OrderProducer.PublishConfirm> settled = new ArrayList<>();
+        OrderProducer.PublishConfirm confirm;
+        while ((confirm = confirms.poll()) != null) {
+            settled.add(confirm);
+        }
+        if (settled.isEmpty()) {
+            return;
+        }
+
+        List<Long> delivered = new ArrayList<>(settled.size());
+        List<OrderProducer.PublishConfirm> undelivered = new ArrayList<>();
+        for (OrderProducer.PublishConfirm settledConfirm : settled) {
+            if (settledConfirm.delivered()) {
+                delivered.add(settledConfirm.event().getId());
+                sagaMetrics.recordPublished(settledConfirm.event().getCreatedAt());
+                sagaMetrics.countEvent(settledConfirm.event().getEventType(), OrderSagaMetrics.OUTCOME_PUBLISHED);
+            } else {
+                undelivered.add(settledConfirm);
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!delivered.isEmpty()) {
+                outboxEventRepository.deleteAllByIdInBatch(delivered);
+            }
+            undelivered.forEach(this::retryOrFail);
+        });
+    }
+
+    private int relayBatch() {
+        int limit = Math.min(batchSize, orderProducer.availableInFlightSlots());
+        if (limit == 0) {
+            log.debug("Outbox relay: publisher confirm window is full, waiting for confirms");
+            return 0;
+        }
+
+        List<OutboxEvent> batch = transactionTemplate.execute(status -> outboxEventRepository.claimNextBatch(limit));
+        if (batch == null || batch.isEmpty()) {
+            lagMillis.set(0);
+            return 0;
+        }
+
+        batch.sort(Comparator.comparing(OutboxEvent::getId));
+        lagMillis.set(Duration.between(batch.get(0).getCreatedAt(), Instant.now()).toMillis());
+        batchSizeSummary.record(batch.size());
+
+        publishTimer.record(() -> {
+            for (OutboxEvent event : batch) {
+                orderProducer.publishAsync(event).thenAccept(confirms::add);
+            }
+        });
+        // A full batch that fills the window would only be claimed and held; let confirms drain first
+        return limit == batchSize ? batch.size() : 0;
+    }
+
+    private void retryOrFail(OrderProducer.PublishConfirm confirm) {
+        OutboxEvent event = confirm.event();
+        if (event.getAttempts() < maxAttempts) {
+            Duration backoff = retryBackoff.multipliedBy(1L << Math.min(event.getAttempts() - 1, 20));
+            if (backoff.compareTo(maxRetryBackoff) > 0) {
+                backoff = maxRetryBackoff;
+            }
+            log.warn("Outbox event {} not delivered (attempt {} of {}), retrying in {}: {}",
+                    event.getId(), event.getAttempts(), maxAttempts, backoff, confirm.failure());
+            outboxEventRepository.scheduleRetry(event.getId(), Instant.now().plus(backoff), confirm.failure());
+            sagaMetrics.countEvent(event.getEventType(), OrderSagaMetrics.OUTCOME_RETRIED);
+            return;
+        }
+
+        log.error("Outbox event {} for {} failed after {} attempts, parking it as FAILED: {}",
+                event.getId(), event.getAggregateId(), event.getAttempts(), confirm.failure());
+        outboxEventRepository.markFailed(event.getId(), confirm.failure());
+        sagaMetrics.countEvent(event.getEventType(), OrderSagaMetrics.OUTCOME_FAILED);
+
+        // Inventory never saw the order, so nothing was reserved: cancel it instead of leaving it PENDING
+        if (event.getEventType() == EventType.ORDER_CREATED) {
+            List<OrderRepository.TransitionedOrder> cancelled = orderRepository.transitionFromPending(
+                    List.of(event.getAggregateId()), OrderStatus.CANCELLED.name(), PUBLISH_FAILED_REASON);
+            for (OrderRepository.TransitionedOrder order : cancelled) {
+                sagaMetrics.recordPendingToFinal(OrderStatus.CANCELLED, order.getCreatedAt());
+                eventPublisher.publishEvent(new OrderStatusChangedEvent(
+                        List.of(order.getOrderId().toString()), OrderStatus.CANCELLED, PUBLISH_FAILED_REASON));
+            }
+        }
+    }
+}
@@ -5,7 +5,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.id.uuid.UuidVersion7Strategy;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -13,7 +16,11 @@ import java.util.UUID;
 import com.espe.gestion_productos.enums.*;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Keyset search: equality on the filter, then (created_at, order_id) as a unique sort key
+        @Index(name = "idx_orders_customer_created", columnList = "customer_id, created_at, order_id"),
+        @Index(name = "idx_orders_status_created", columnList = "status, created_at, order_id")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -21,11 +28,11 @@ import com.espe.gestion_productos.enums.*;
 public class Order {
     
     @Id
-    @Column(name = "order_id", nullable = false, length = 36)
-    private String orderId;
+    @Column(name = "order_id", nullable = false)
+    private UUID orderId;
     
-    @Column(name = "customer_id", nullable = false, length = 36)
-    private String customerId;
+    @Column(name = "customer_id", nullable = false)
+    private UUID customerId;
     
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
@@ -39,6 +46,11 @@ public class Order {
     
     @Embedded
     private ShippingAddress shippingAddress;
+
+    // The default backfills rows that existed before the column was added
+    @Column(name = "created_at", nullable = false, updatable = false)
+    @ColumnDefault("now()")
+    private Instant createdAt;
     
     @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
     @Builder.Default
@@ -46,12 +58,16 @@ public class Order {
     
     @PrePersist
     public void generateId() {
+        // Time-ordered (v7) ids append to the right edge of the primary key and created_at indexes
         if (this.orderId == null) {
-            this.orderId = UUID.randomUUID().toString();
+            this.orderId = UuidVersion7Strategy.INSTANCE.generateUuid(null);
         }
         if (this.status == null) {
             this.status = OrderStatus.PENDING;
         }
+        if (this.createdAt == null) {
+            this.createdAt = Instant.now();
+        }
     }
     
     public void addItem(OrderItem item) {
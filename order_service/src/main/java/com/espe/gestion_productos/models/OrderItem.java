@@ -6,8 +6,13 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.Instant;
+import java.util.UUID;
+
 @Entity
-@Table(name = "order_items")
+@Table(name = "order_items", indexes = {
+        @Index(name = "idx_order_items_order_id", columnList = "order_id, order_created_at")
+})
 @Data
 @Builder
 @NoArgsConstructor
@@ -15,19 +20,32 @@ import lombok.NoArgsConstructor;
 public class OrderItem {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id", nullable = false)
     private Order order;
     
-    @Column(name = "product_id", nullable = false, length = 36)
-    private String productId;
+    // Partition key of order_items: the owning order's created_at, so both land in the same month
+    @Column(name = "order_created_at", nullable = false, updatable = false)
+    private Instant orderCreatedAt;
+
+    @Column(name = "product_id", nullable = false)
+    private UUID productId;
     
     @Column(nullable = false)
     private Integer quantity;
 
     @Column(name = "unit_price", nullable = false)
     private Double unitPrice;
+
+    // Items are cascaded after the order's own @PrePersist has set its createdAt
+    @PrePersist
+    public void copyOrderCreatedAt() {
+        if (this.orderCreatedAt == null) {
+            this.orderCreatedAt = order.getCreatedAt();
+        }
+    }
 }
\ No newline at end of file
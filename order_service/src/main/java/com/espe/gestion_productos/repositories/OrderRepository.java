@@ -1,9 +1,143 @@
 package com.espe.gestion_productos.repositories;
 
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.dto.OrderStatusResponse;
+import com.espe.gestion_productos.dto.OrderSummaryResponse;
+import com.espe.gestion_productos.enums.OrderStatus;
 import com.espe.gestion_productos.models.Order;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
 @Repository
-public interface OrderRepository extends JpaRepository<Order, String> {
+public interface OrderRepository extends JpaRepository<Order, UUID> {
+
+    // Items are always needed when an order is loaded by id; fetch them in the same statement
+    @Override
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findById(UUID orderId);
+
+    // Responses carry ids as strings: uuid columns are cast in the projection
+    @Query("SELECT new com.espe.gestion_productos.dto.OrderDetailsRow("
+            + "cast(o.orderId as String), cast(o.customerId as String), o.status, o.reason, o.paymentReference, "
+            + "o.shippingAddress.street, o.shippingAddress.city, o.shippingAddress.state, "
+            + "o.shippingAddress.zipCode, o.shippingAddress.country, "
+            + "cast(i.productId as String), i.quantity, i.unitPrice) "
+            + "FROM Order o LEFT JOIN o.items i ON i.orderCreatedAt = o.createdAt "
+            + "WHERE o.orderId = :orderId ORDER BY i.id")
+    List<OrderDetailsRow> findDetailsRows(@Param("orderId") UUID orderId);
+
+    // Single-statement PENDING -> final transition; returns only the orders that actually moved,
+    // so redelivered or out-of-order responses are no-ops
+    @Query(value = "UPDATE orders SET status = :status, reason = CAST(:reason AS text) "
+            + "WHERE order_id IN (:orderIds) AND status = 'PENDING' "
+            + "RETURNING order_id AS \"orderId\", created_at AS \"createdAt\"", nativeQuery = true)
+    List<TransitionedOrder> transitionFromPending(@Param("orderIds") Collection<UUID> orderIds,
+                                       @Param("status") String status,
+                                       @Param("reason") String reason);
+
+    // CONFIRMED -> CANCELLED for orders whose stock could not be committed in inventory
+    @Query(value = "UPDATE orders SET status = 'CANCELLED', reason = CAST(:reason AS text) "
+            + "WHERE order_id IN (:orderIds) AND status = 'CONFIRMED' "
+            + "RETURNING order_id AS \"orderId\", created_at AS \"createdAt\"", nativeQuery = true)
+    List<TransitionedOrder> cancelConfirmed(@Param("orderIds") Collection<UUID> orderIds,
+                                            @Param("reason") String reason);
+
+    @Query("SELECT new com.espe.gestion_productos.dto.OrderStatusResponse(cast(o.orderId as String), o.status, o.reason) "
+            + "FROM Order o WHERE o.orderId = :orderId")
+    Optional<OrderStatusResponse> findStatusById(@Param("orderId") UUID orderId);
+
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderId IN :orderIds")
+    List<UUID> findExistingOrderIds(@Param("orderIds") Collection<UUID> orderIds);
+
+    @Query("SELECT o.orderId FROM Order o WHERE o.orderId IN :orderIds AND o.status = :status")
+    List<UUID> findOrderIdsByStatus(@Param("orderIds") Collection<UUID> orderIds,
+                                    @Param("status") OrderStatus status);
+
+    // Keyset (seek) pagination, newest first: each page starts right after the (createdAt, orderId)
+    // of the previous one, so the cost does not grow with how deep the client has paged
+    @Query("SELECT new com.espe.gestion_productos.dto.OrderSummaryResponse(cast(o.orderId as String), cast(o.customerId as String), o.status, o.createdAt) "
+            + "FROM Order o WHERE o.customerId = :customerId "
+            + "AND (o.createdAt, o.orderId) < (:afterCreatedAt, :afterOrderId) "
+            + "ORDER BY o.createdAt DESC, o.orderId DESC")
+    List<OrderSummaryResponse> searchByCustomer(@Param("customerId") UUID customerId,
+                                                @Param("afterCreatedAt") Instant afterCreatedAt,
+                                                @Param("afterOrderId") UUID afterOrderId,
+                                                Limit limit);
+
+    @Query("SELECT new com.espe.gestion_productos.dto.OrderSummaryResponse(cast(o.orderId as String), cast(o.customerId as String), o.status, o.createdAt) "
+            + "FROM Order o WHERE o.status = :status "
+            + "AND (o.createdAt, o.orderId) < (:afterCreatedAt, :afterOrderId) "
+            + "ORDER BY o.createdAt DESC, o.orderId DESC")
+    List<OrderSummaryResponse> searchByStatus(@Param("status") OrderStatus status,
+                                              @Param("afterCreatedAt") Instant afterCreatedAt,
+                                              @Param("afterOrderId") UUID afterOrderId,
+                                              Limit limit);
+
+    @Query("SELECT new com.espe.gestion_productos.dto.OrderSummaryResponse(cast(o.orderId as String), cast(o.customerId as String), o.status, o.createdAt) "
+            + "FROM Order o WHERE o.customerId = :customerId AND o.status = :status "
+            + "AND (o.createdAt, o.orderId) < (:afterCreatedAt, :afterOrderId) "
+            + "ORDER BY o.createdAt DESC, o.orderId DESC")
+    List<OrderSummaryResponse> searchByCustomerAndStatus(@Param("customerId") UUID customerId,
+                                                         @Param("status") OrderStatus status,
+                                                         @Param("afterCreatedAt") Instant afterCreatedAt,
+                                                         @Param("afterOrderId") UUID afterOrderId,
+                                                         Limit limit);
+
+    // Archived orders (see OrderArchiver) as an OrderDetailsResponse JSON document
+    @Query(value = "SELECT CAST(jsonb_build_object('orderId', order_id, 'customerId', customer_id, 'status', status, "
+            + "'reason', reason, 'paymentReference', payment_reference) || details AS text) "
+            + "FROM orders_archive WHERE order_id = :orderId", nativeQuery = true)
+    Optional<String> findArchivedDetails(@Param("orderId") UUID orderId);
+
+    // Moves up to batchSize finished orders created before the cutoff, with their items, into orders_archive
+    // in one statement; rows another archiver has locked are skipped
+    @Modifying
+    @Query(value = "WITH batch AS ("
+            + "  SELECT order_id, created_at FROM orders"
+            + "  WHERE status IN ('CONFIRMED', 'CANCELLED') AND created_at < :cutoff"
+            + "  LIMIT :batchSize FOR UPDATE SKIP LOCKED"
+            + "), items AS ("
+            + "  DELETE FROM order_items i USING batch b"
+            + "  WHERE i.order_id = b.order_id AND i.order_created_at = b.created_at"
+            + "  RETURNING i.id, i.order_id, i.product_id, i.quantity, i.unit_price"
+            + "), item_documents AS ("
+            + "  SELECT order_id, jsonb_agg(jsonb_build_object('productId', product_id, 'quantity', quantity, "
+            + "    'unitPrice', unit_price) ORDER BY id) AS items"
+            + "  FROM items GROUP BY order_id"
+            + "), moved AS ("
+            + "  DELETE FROM orders o USING batch b"
+            + "  WHERE o.order_id = b.order_id AND o.created_at = b.created_at"
+            + "  RETURNING o.*"
+            + ") "
+            + "INSERT INTO orders_archive (order_id, customer_id, status, reason, payment_reference, created_at, details) "
+            + "SELECT m.order_id, m.customer_id, m.status, m.reason, m.payment_reference, m.created_at, "
+            + "  jsonb_build_object('shippingAddress', jsonb_build_object('street', m.street, 'city', m.city, "
+            + "    'state', m.state, 'zipCode', m.zip_code, 'country', m.country), "
+            + "    'items', coalesce(d.items, CAST('[]' AS jsonb))) "
+            + "FROM moved m LEFT JOIN item_documents d ON d.order_id = m.order_id", nativeQuery = true)
+    int archiveFinishedBefore(@Param("cutoff") Instant cutoff, @Param("batchSize") int batchSize);
+
+    // Partition maintenance functions from V3__partition_orders_by_month
+    @Query(value = "SELECT create_order_partitions(CAST(:fromTs AS timestamptz), CAST(:toTs AS timestamptz))", nativeQuery = true)
+    int createPartitions(@Param("fromTs") Instant from, @Param("toTs") Instant to);
+
+    @Query(value = "SELECT drop_empty_order_partitions(CAST(:beforeTs AS timestamptz))", nativeQuery = true)
+    int dropEmptyPartitions(@Param("beforeTs") Instant before);
+
+    interface TransitionedOrder {
+        UUID getOrderId();
+
+        Instant getCreatedAt();
+    }
 }
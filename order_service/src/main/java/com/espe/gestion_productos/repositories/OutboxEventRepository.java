@@ -0,0 +1,39 @@
+package com.espe.gestion_productos.repositories;
+
+import com.espe.gestion_productos.models.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Marks the next due PENDING events IN_FLIGHT and returns them; SKIP LOCKED lets several relay
+    // instances claim batches without blocking each other, and the claim commits before publishing
+    @Query(value = "UPDATE order_outbox SET status = 'IN_FLIGHT', attempts = attempts + 1, claimed_at = now() "
+            + "WHERE id IN (SELECT id FROM order_outbox WHERE status = 'PENDING' AND next_attempt_at <= now() "
+            + "  ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED) "
+            + "RETURNING *", nativeQuery = true)
+    List<OutboxEvent> claimNextBatch(@Param("limit") int limit);
+
+    // Claims whose confirm never arrived, e.g. the relay instance died mid-flight
+    @Modifying
+    @Query(value = "UPDATE order_outbox SET status = 'PENDING', last_error = 'No publisher confirm received' "
+            + "WHERE status = 'IN_FLIGHT' AND claimed_at < :claimedBefore", nativeQuery = true)
+    int releaseStaleClaims(@Param("claimedBefore") Instant claimedBefore);
+
+    @Modifying
+    @Query(value = "UPDATE order_outbox SET status = 'PENDING', next_attempt_at = :nextAttemptAt, "
+            + "last_error = CAST(:error AS text) WHERE id = :id", nativeQuery = true)
+    int scheduleRetry(@Param("id") Long id, @Param("nextAttemptAt") Instant nextAttemptAt, @Param("error") String error);
+
+    @Modifying
+    @Query(value = "UPDATE order_outbox SET status = 'FAILED', last_error = CAST(:error AS text) WHERE id = :id",
+            nativeQuery = true)
+    int markFailed(@Param("id") Long id, @Param("error") String error);
+}
@@ -0,0 +1,102 @@
+package com.espe.gestion_productos.services;
+
+import com.espe.gestion_productos.dto.CreateOrderResponse;
+import com.espe.gestion_productos.models.IdempotencyKey;
+import com.espe.gestion_productos.repositories.IdempotencyKeyRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Remembers the response of every POST /api/orders sent with an Idempotency-Key.
+ * Retries are answered from a bounded in-process cache; the key table is only read
+ * on a cache miss (another instance, a restart or an evicted entry).
+ */
+@Service
+@Slf4j
+public class IdempotencyService {
+
+    public static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository idempotencyKeyRepository;
+    private final Duration retention;
+    private final Cache<String, CreateOrderResponse> responses;
+
+    public IdempotencyService(IdempotencyKeyRepository idempotencyKeyRepository,
+                              MeterRegistry meterRegistry,
+                              @Value("${order.idempotency.cache.max-size:100000}") long cacheMaxSize,
+                              @Value("${order.idempotency.cache.ttl:10m}") Duration cacheTtl,
+                              @Value("${order.idempotency.retention:24h}") Duration retention) {
+        this.idempotencyKeyRepository = idempotencyKeyRepository;
+        this.retention = retention;
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(cacheTtl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, responses, "order.idempotency");
+    }
+
+    public static void validateKey(String key) {
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+    }
+
+    public Optional<CreateOrderResponse> find(String key) {
+        CreateOrderResponse cached = responses.getIfPresent(key);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        Optional<CreateOrderResponse> stored = idempotencyKeyRepository.findById(key)
+                .map(entry -> CreateOrderResponse.builder()
+                        .orderId(entry.getOrderId().toString())
+                        .status(entry.getStatus())
+                        .message(OrderService.ORDER_CREATED_MESSAGE)
+                        .build());
+        stored.ifPresent(response -> responses.put(key, response));
+        return stored;
+    }
+
+    // Runs inside the order's transaction, so the key exists if and only if the order does
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void register(String key, CreateOrderResponse response) {
+        idempotencyKeyRepository.save(IdempotencyKey.builder()
+                .key(key)
+                .orderId(UUID.fromString(response.getOrderId()))
+                .status(response.getStatus())
+                .build());
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                responses.put(key, response);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${order.idempotency.purge-interval-ms:3600000}",
+            initialDelayString = "${order.idempotency.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpiredKeys() {
+        int deleted = idempotencyKeyRepository.deleteCreatedBefore(Instant.now().minus(retention));
+        if (deleted > 0) {
+            log.info("Purged {} idempotency keys older than {}", deleted, retention);
+        }
+    }
+}
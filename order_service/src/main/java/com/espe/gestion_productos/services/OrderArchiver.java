@@ -0,0 +1,90 @@
+package com.espe.gestion_productos.services;
+
+import com.espe.gestion_productos.repositories.OrderRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+/**
+ * Storage upkeep for the monthly partitioned orders tables. Every run creates the partitions for the
+ * next months, moves CONFIRMED/CANCELLED orders older than order.archive.after into orders_archive
+ * in bounded batches (one short transaction each) and drops the live partitions archival has emptied.
+ */
+@Component
+@Slf4j
+public class OrderArchiver {
+
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter archivedCounter;
+    private final int monthsAhead;
+    private final boolean archiveEnabled;
+    private final Duration archiveAfter;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public OrderArchiver(OrderRepository orderRepository,
+                         PlatformTransactionManager transactionManager,
+                         MeterRegistry meterRegistry,
+                         @Value("${order.partitions.months-ahead:3}") int monthsAhead,
+                         @Value("${order.archive.enabled:true}") boolean archiveEnabled,
+                         @Value("${order.archive.after:90d}") Duration archiveAfter,
+                         @Value("${order.archive.batch-size:500}") int batchSize,
+                         @Value("${order.archive.max-batches-per-run:200}") int maxBatchesPerRun) {
+        this.orderRepository = orderRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.monthsAhead = monthsAhead;
+        this.archiveEnabled = archiveEnabled;
+        this.archiveAfter = archiveAfter;
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.archivedCounter = Counter.builder("order.archive.orders")
+                .description("Finished orders moved into orders_archive")
+                .register(meterRegistry);
+    }
+
+    // Runs at startup too, so a service that was down across a month boundary has its partition before the first insert
+    @Scheduled(fixedDelayString = "${order.archive.interval-ms:300000}")
+    public void run() {
+        Instant now = Instant.now();
+        Instant horizon = now.atOffset(ZoneOffset.UTC).plusMonths(monthsAhead).toInstant();
+        Integer created = transactionTemplate.execute(status -> orderRepository.createPartitions(now, horizon));
+        if (created != null && created > 0) {
+            log.info("Created {} monthly order partitions up to {}", created, horizon);
+        }
+
+        if (archiveEnabled) {
+            archive(now.minus(archiveAfter));
+        }
+    }
+
+    private void archive(Instant cutoff) {
+        int archived = 0;
+        int batches = 0;
+        Integer moved;
+        do {
+            moved = transactionTemplate.execute(status -> orderRepository.archiveFinishedBefore(cutoff, batchSize));
+            archived += moved;
+            batches++;
+        } while (moved == batchSize && batches < maxBatchesPerRun);
+
+        if (archived > 0) {
+            archivedCounter.increment(archived);
+            log.info("Archived {} finished orders created before {} in {} batches", archived, cutoff, batches);
+        }
+
+        Integer dropped = transactionTemplate.execute(status -> orderRepository.dropEmptyPartitions(cutoff));
+        if (dropped != null && dropped > 0) {
+            log.info("Dropped {} emptied monthly order partitions before {}", dropped, cutoff);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.espe.gestion_productos.services;
+
+import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.messagin.OrderStatusChangedEvent;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Read-through cache for GET /api/orders/{orderId}.
+ * Entries are dropped as soon as a status change commits, so a poller never sees
+ * an old status; the TTL only bounds memory for orders nobody reads anymore.
+ */
+@Component
+@Slf4j
+public class OrderDetailsCache {
+
+    private final Cache<String, OrderDetailsResponse> details;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public OrderDetailsCache(PlatformTransactionManager transactionManager,
+                             MeterRegistry meterRegistry,
+                             @Value("${order.details-cache.max-size:10000}") long maxSize,
+                             @Value("${order.details-cache.ttl:5m}") Duration ttl) {
+        this.details = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, details, "order.details");
+
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Only a miss opens a (read-only) transaction; hits never touch the connection pool
+    public OrderDetailsResponse get(String orderId, Function<String, OrderDetailsResponse> loader) {
+        return details.get(orderId, id -> readOnlyTransaction.execute(status -> loader.apply(id)));
+    }
+
+    // Invalidating a key that is being loaded waits for the load, so a read racing the commit cannot stick
+    @TransactionalEventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        details.invalidateAll(event.getOrderIds());
+        log.debug("Evicted {} order details after transition to {}", event.getOrderIds().size(), event.getStatus());
+    }
+}
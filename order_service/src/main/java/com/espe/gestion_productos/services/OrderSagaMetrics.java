@@ -0,0 +1,110 @@
+package com.espe.gestion_productos.services;
+
+import com.espe.gestion_productos.enums.EventType;
+import com.espe.gestion_productos.enums.OrderStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Latency of each stage an order goes through between POST /api/orders and the inventory verdict,
+ * as one order.saga.stage timer tagged by stage, plus order.saga.events counted by event type and outcome.
+ * Stages: validation, persist, publish (outbox insert to broker confirm), broker_dwell (inventory
+ * publish to our consume) and pending_to_final (order creation to CONFIRMED/CANCELLED).
+ */
+@Component
+public class OrderSagaMetrics {
+
+    public static final String OUTCOME_PUBLISHED = "published";
+    public static final String OUTCOME_UNCONFIRMED = "unconfirmed";
+    public static final String OUTCOME_RETRIED = "retried";
+    public static final String OUTCOME_FAILED = "failed";
+    public static final String OUTCOME_PARKED = "parked";
+    public static final String OUTCOME_APPLIED = "applied";
+    public static final String OUTCOME_DUPLICATE = "duplicate";
+    public static final String OUTCOME_STALE = "stale";
+    public static final String OUTCOME_UNKNOWN_ORDER = "unknown_order";
+    public static final String OUTCOME_IGNORED = "ignored";
+
+    private static final String STAGE_TIMER = "order.saga.stage";
+    private static final String EVENTS_COUNTER = "order.saga.events";
+
+    private final MeterRegistry meterRegistry;
+    private final Timer validationTimer;
+    private final Timer persistTimer;
+    private final Timer publishTimer;
+    private final Timer brokerDwellTimer;
+    private final Map<OrderStatus, Timer> pendingToFinalTimers = new EnumMap<>(OrderStatus.class);
+
+    public OrderSagaMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.validationTimer = stageTimer("validation", null);
+        this.persistTimer = stageTimer("persist", null);
+        this.publishTimer = stageTimer("publish", null);
+        this.brokerDwellTimer = stageTimer("broker_dwell", null);
+        for (OrderStatus status : OrderStatus.values()) {
+            if (status != OrderStatus.PENDING) {
+                pendingToFinalTimers.put(status, stageTimer("pending_to_final", status));
+            }
+        }
+    }
+
+    public Timer validationTimer() {
+        return validationTimer;
+    }
+
+    public Timer persistTimer() {
+        return persistTimer;
+    }
+
+    public void recordPublished(Instant enqueuedAt) {
+        publishTimer.record(since(enqueuedAt));
+    }
+
+    // Producer and consumer clocks differ; skew that would make the dwell negative is clamped to zero
+    public void recordBrokerDwell(long publishedAtEpochMillis) {
+        if (publishedAtEpochMillis > 0) {
+            brokerDwellTimer.record(Duration.ofMillis(Math.max(0, System.currentTimeMillis() - publishedAtEpochMillis)));
+        }
+    }
+
+    public void recordPendingToFinal(OrderStatus status, Instant createdAt) {
+        pendingToFinalTimers.get(status).record(since(createdAt));
+    }
+
+    public void countEvent(EventType eventType, String outcome) {
+        countEvents(eventType, outcome, 1);
+    }
+
+    public void countEvents(EventType eventType, String outcome, int count) {
+        if (count > 0) {
+            Counter.builder(EVENTS_COUNTER)
+                    .description("Order saga events by type and what happened to them")
+                    .tag("type", String.valueOf(eventType))
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .increment(count);
+        }
+    }
+
+    private Timer stageTimer(String stage, OrderStatus status) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Latency of one stage of the order/inventory saga")
+                .tag("stage", stage)
+                .tag("status", status == null ? "none" : status.name())
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static Duration since(Instant start) {
+        Duration elapsed = Duration.between(start, Instant.now());
+        return elapsed.isNegative() ? Duration.ZERO : elapsed;
+    }
+}
@@ -1,18 +1,40 @@
 package com.espe.gestion_productos.services;
 
+import com.espe.gestion_productos.dto.BatchCreateOrderResponse;
+import com.espe.gestion_productos.dto.BatchOrderResult;
 import com.espe.gestion_productos.dto.CreateOrderRequest;
 import com.espe.gestion_productos.dto.CreateOrderResponse;
 import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.dto.OrderPageResponse;
+import com.espe.gestion_productos.dto.OrderSummaryResponse;
+import com.espe.gestion_productos.enums.BatchItemStatus;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.mappers.OrderMapper;
 import com.espe.gestion_productos.messagin.OrderProducer;
 import com.espe.gestion_productos.models.Order;
-import com.espe.gestion_productos.models.OrderItem;
-import com.espe.gestion_productos.models.ShippingAddress;
 import com.espe.gestion_productos.repositories.OrderRepository;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.ObjectMapper;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 @Service
@@ -20,77 +42,219 @@ import java.util.stream.Collectors;
 @Slf4j
 public class OrderService {
 
+    public static final String ORDER_CREATED_MESSAGE = "Order created successfully. Waiting for inventory validation.";
+
+    // First-page cursor: sorts after every real (created_at, order_id)
+    private static final Instant FIRST_PAGE_CREATED_AT = Instant.parse("9999-12-31T23:59:59Z");
+    private static final UUID FIRST_PAGE_ORDER_ID = new UUID(-1L, -1L);
+    private static final String CURSOR_SEPARATOR = "|";
+
     private final OrderRepository orderRepository;
     private final OrderProducer orderProducer;
+    private final Validator validator;
+    private final TransactionTemplate transactionTemplate;
+    private final IdempotencyService idempotencyService;
+    private final OrderDetailsCache orderDetailsCache;
+    private final ObjectMapper objectMapper;
+
+    @Value("${order.batch.max-size:1000}")
+    private int maxBatchSize;
+
+    @Value("${order.batch.chunk-size:100}")
+    private int chunkSize;
+
+    @Value("${order.search.max-page-size:100}")
+    private int maxPageSize;
 
     @Transactional
-    public CreateOrderResponse createOrder(CreateOrderRequest request) {
+    public CreateOrderResponse createOrder(CreateOrderRequest request, String idempotencyKey) {
         log.info("Creating new order for customerId: {}", request.getCustomerId());
 
-        // Create Order entity
-        Order order = Order.builder()
-                .customerId(request.getCustomerId())
-                .paymentReference(request.getPaymentReference())
-                .shippingAddress(ShippingAddress.builder()
-                        .street(request.getShippingAddress().getStreet())
-                        .city(request.getShippingAddress().getCity())
-                        .state(request.getShippingAddress().getState())
-                        .zipCode(request.getShippingAddress().getZipCode())
-                        .country(request.getShippingAddress().getCountry())
-                        .build())
-                .build();
-
-        // Add items to order
-        request.getItems().forEach(itemRequest -> {
-            OrderItem item = OrderItem.builder()
-                    .productId(itemRequest.getProductId())
-                    .quantity(itemRequest.getQuantity())
-                    .unitPrice(itemRequest.getUnitPrice())
-                    .build();
-            order.addItem(item);
-        });
+        // Create Order entity with its items
+        Order order = OrderMapper.toOrder(request);
 
         // Save order to database
         Order savedOrder = orderRepository.save(order);
         log.info("Order created with orderId: {} in PENDING status", savedOrder.getOrderId());
 
-        // Publish OrderCreated event to RabbitMQ
-        orderProducer.publishOrderCreatedEvent(savedOrder);
+        // Record OrderCreated event in the outbox; OutboxRelay publishes it after commit
+        orderProducer.enqueueOrderCreatedEvent(savedOrder);
 
-        return CreateOrderResponse.builder()
-                .orderId(savedOrder.getOrderId())
+        CreateOrderResponse response = CreateOrderResponse.builder()
+                .orderId(savedOrder.getOrderId().toString())
                 .status(savedOrder.getStatus())
-                .message("Order created successfully. Waiting for inventory validation.")
+                .message(ORDER_CREATED_MESSAGE)
+                .build();
+
+        // Stored in the same transaction so a retry can never see the key without the order
+        if (idempotencyKey != null) {
+            idempotencyService.register(idempotencyKey, response);
+        }
+        return response;
+    }
+
+    // Lets the batch endpoints stop reading a body as soon as it holds more orders than a batch may
+    public void checkBatchSize(int size) {
+        if (size > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + size + " exceeds the maximum of " + maxBatchSize);
+        }
+    }
+
+    public BatchCreateOrderResponse createOrders(List<CreateOrderRequest> requests) {
+        checkBatchSize(requests.size());
+        log.info("Creating batch of {} orders", requests.size());
+
+        BatchOrderResult[] results = new BatchOrderResult[requests.size()];
+        List<Integer> accepted = new ArrayList<>(requests.size());
+
+        // Validate every entry up front so a bad entry only rejects itself
+        for (int i = 0; i < requests.size(); i++) {
+            CreateOrderRequest request = requests.get(i);
+            if (request == null) {
+                results[i] = batchResult(i, null, BatchItemStatus.REJECTED, "Malformed order entry");
+                continue;
+            }
+            Set<ConstraintViolation<CreateOrderRequest>> violations = validator.validate(request);
+            if (!violations.isEmpty()) {
+                results[i] = batchResult(i, null, BatchItemStatus.REJECTED, violations.iterator().next().getMessage());
+                continue;
+            }
+            accepted.add(i);
+        }
+
+        // Persist accepted orders in chunks, one transaction (and a few JDBC batches) per chunk
+        for (int from = 0; from < accepted.size(); from += chunkSize) {
+            List<Integer> chunk = accepted.subList(from, Math.min(from + chunkSize, accepted.size()));
+            try {
+                List<Order> saved = transactionTemplate.execute(status -> persistChunk(requests, chunk));
+                for (int j = 0; j < chunk.size(); j++) {
+                    results[chunk.get(j)] = batchResult(chunk.get(j), saved.get(j).getOrderId(), BatchItemStatus.CREATED, null);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Batch chunk of {} orders failed, retrying them one by one: {}", chunk.size(), e.getMessage());
+                for (Integer index : chunk) {
+                    results[index] = createSingleInBatch(index, requests.get(index));
+                }
+            }
+        }
+
+        List<BatchOrderResult> resultList = Arrays.asList(results);
+        return BatchCreateOrderResponse.builder()
+                .total(requests.size())
+                .created(countByStatus(resultList, BatchItemStatus.CREATED))
+                .rejected(countByStatus(resultList, BatchItemStatus.REJECTED))
+                .failed(countByStatus(resultList, BatchItemStatus.FAILED))
+                .results(resultList)
                 .build();
     }
 
-    @Transactional(readOnly = true)
+    private List<Order> persistChunk(List<CreateOrderRequest> requests, List<Integer> chunk) {
+        List<Order> orders = chunk.stream()
+                .map(index -> OrderMapper.toOrder(requests.get(index)))
+                .collect(Collectors.toList());
+        List<Order> saved = orderRepository.saveAll(orders);
+        saved.forEach(orderProducer::enqueueOrderCreatedEvent);
+        return saved;
+    }
+
+    private BatchOrderResult createSingleInBatch(int index, CreateOrderRequest request) {
+        try {
+            Order saved = transactionTemplate.execute(status -> persistChunk(List.of(request), List.of(0)).get(0));
+            return batchResult(index, saved.getOrderId(), BatchItemStatus.CREATED, null);
+        } catch (RuntimeException e) {
+            log.error("Failed to create order at batch index {}", index, e);
+            return batchResult(index, null, BatchItemStatus.FAILED, e.getMessage());
+        }
+    }
+
+    private static BatchOrderResult batchResult(int index, UUID orderId, BatchItemStatus status, String message) {
+        return BatchOrderResult.builder()
+                .index(index)
+                .orderId(Objects.toString(orderId, null))
+                .status(status)
+                .message(message)
+                .build();
+    }
+
+    private static int countByStatus(List<BatchOrderResult> results, BatchItemStatus status) {
+        return (int) results.stream().filter(result -> result.getStatus() == status).count();
+    }
+
     public OrderDetailsResponse getOrderDetails(String orderId) {
         log.info("Fetching order details for orderId: {}", orderId);
+        return orderDetailsCache.get(orderId, this::loadOrderDetails);
+    }
 
-        Order order = orderRepository.findById(orderId)
+    private OrderDetailsResponse loadOrderDetails(String orderId) {
+        UUID id = OrderMapper.toUuid(orderId);
+        if (id == null) {
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+        // Order and items in one statement, projected straight into the response
+        List<OrderDetailsRow> rows = orderRepository.findDetailsRows(id);
+        if (!rows.isEmpty()) {
+            return OrderMapper.toOrderDetails(rows);
+        }
+        // Finished orders older than order.archive.after only live in the archive
+        return orderRepository.findArchivedDetails(id)
+                .map(json -> objectMapper.readValue(json, OrderDetailsResponse.class))
                 .orElseThrow(() -> new RuntimeException("Order not found: " + orderId));
+    }
+
+    public OrderPageResponse searchOrders(String customerId, OrderStatus status, String after, int limit) {
+        if (customerId == null && status == null) {
+            throw new IllegalArgumentException("At least one of customerId or status is required");
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+
+        UUID customer = null;
+        if (customerId != null) {
+            customer = OrderMapper.toUuid(customerId);
+            if (customer == null) {
+                throw new IllegalArgumentException("Invalid UUID format for customerId");
+            }
+        }
 
-        return OrderDetailsResponse.builder()
-                .orderId(order.getOrderId())
-                .customerId(order.getCustomerId())
-                .status(order.getStatus())
-                .reason(order.getReason())
-                .paymentReference(order.getPaymentReference())
-                .items(order.getItems().stream()
-                        .map(item -> com.espe.gestion_productos.dto.OrderItemResponse.builder()
-                                .productId(item.getProductId())
-                                .quantity(item.getQuantity())
-                                .unitPrice(item.getUnitPrice())
-                                .build())
-                        .collect(Collectors.toList()))
-                .shippingAddress(com.espe.gestion_productos.dto.ShippingAddressRequest.builder()
-                        .street(order.getShippingAddress().getStreet())
-                        .city(order.getShippingAddress().getCity())
-                        .state(order.getShippingAddress().getState())
-                        .zipCode(order.getShippingAddress().getZipCode())
-                        .country(order.getShippingAddress().getCountry())
-                        .build())
+        Instant afterCreatedAt = FIRST_PAGE_CREATED_AT;
+        UUID afterOrderId = FIRST_PAGE_ORDER_ID;
+        if (after != null) {
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8);
+                int separator = raw.indexOf(CURSOR_SEPARATOR);
+                afterCreatedAt = Instant.parse(raw.substring(0, separator));
+                afterOrderId = UUID.fromString(raw.substring(separator + 1));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + after);
+            }
+        }
+
+        // One extra row tells whether there is a next page without a COUNT
+        Limit fetch = Limit.of(limit + 1);
+        List<OrderSummaryResponse> orders;
+        if (status == null) {
+            orders = orderRepository.searchByCustomer(customer, afterCreatedAt, afterOrderId, fetch);
+        } else if (customerId == null) {
+            orders = orderRepository.searchByStatus(status, afterCreatedAt, afterOrderId, fetch);
+        } else {
+            orders = orderRepository.searchByCustomerAndStatus(customer, status, afterCreatedAt, afterOrderId, fetch);
+        }
+
+        String nextCursor = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            OrderSummaryResponse last = orders.get(limit - 1);
+            nextCursor = encodeCursor(last.getCreatedAt(), last.getOrderId());
+        }
+        return OrderPageResponse.builder()
+                .orders(orders)
+                .nextCursor(nextCursor)
                 .build();
     }
+
+    private static String encodeCursor(Instant createdAt, String orderId) {
+        String raw = createdAt + CURSOR_SEPARATOR + orderId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 }
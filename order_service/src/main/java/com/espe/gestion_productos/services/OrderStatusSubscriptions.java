@@ -0,0 +1,127 @@
+package com.espe.gestion_productos.services;
+
+import com.espe.gestion_productos.dto.OrderStatusResponse;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.mappers.OrderMapper;
+import com.espe.gestion_productos.messagin.OrderStatusChangedEvent;
+import com.espe.gestion_productos.repositories.OrderRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clients waiting for an order to leave PENDING, served over Server-Sent Events.
+ * Each waiter is an async servlet request plus one map entry, no thread is held
+ * while idle. A waiter receives a single status event and the stream is closed.
+ */
+@Component
+@Slf4j
+public class OrderStatusSubscriptions {
+
+    private static final String STATUS_EVENT = "status";
+
+    private final OrderRepository orderRepository;
+    private final long timeoutMs;
+    private final Map<String, Set<SseEmitter>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    public OrderStatusSubscriptions(OrderRepository orderRepository,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${order.status-events.timeout:60s}") Duration timeout) {
+        this.orderRepository = orderRepository;
+        this.timeoutMs = timeout.toMillis();
+        Gauge.builder("order.status.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Clients waiting on an order status stream")
+                .register(meterRegistry);
+    }
+
+    public SseEmitter subscribe(String orderId) {
+        UUID uuid = OrderMapper.toUuid(orderId);
+        if (uuid == null) {
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        emitter.onCompletion(() -> unregister(orderId, emitter));
+        emitter.onTimeout(() -> {
+            unregister(orderId, emitter);
+            emitter.complete();
+        });
+        emitter.onError(error -> unregister(orderId, emitter));
+
+        // Register before reading the status so a transition committing in between is not missed.
+        // The add happens inside compute, atomically with onStatusChanged removing the set: the emitter
+        // is either in the set that gets notified or in a new one, and then the read sees the new status
+        subscribers.compute(orderId, (id, emitters) -> {
+            Set<SseEmitter> registered = emitters != null ? emitters : ConcurrentHashMap.newKeySet();
+            registered.add(emitter);
+            subscriberCount.incrementAndGet();
+            return registered;
+        });
+
+        OrderStatusResponse current = orderRepository.findStatusById(uuid).orElse(null);
+        if (current == null) {
+            unregister(orderId, emitter);
+            throw new RuntimeException("Order not found: " + orderId);
+        }
+        if (current.getStatus() != OrderStatus.PENDING && unregister(orderId, emitter)) {
+            send(emitter, current);
+        }
+        return emitter;
+    }
+
+    @TransactionalEventListener
+    public void onStatusChanged(OrderStatusChangedEvent event) {
+        for (String orderId : event.getOrderIds()) {
+            Set<SseEmitter> waiting = subscribers.remove(orderId);
+            if (waiting == null) {
+                continue;
+            }
+            OrderStatusResponse status = OrderStatusResponse.builder()
+                    .orderId(orderId)
+                    .status(event.getStatus())
+                    .reason(event.getReason())
+                    .build();
+            for (SseEmitter emitter : waiting) {
+                subscriberCount.decrementAndGet();
+                send(emitter, status);
+            }
+        }
+    }
+
+    // Whoever removes the emitter from the registry owns the final send, so it happens exactly once
+    private boolean unregister(String orderId, SseEmitter emitter) {
+        boolean[] removed = {false};
+        subscribers.computeIfPresent(orderId, (id, emitters) -> {
+            removed[0] = emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+        if (removed[0]) {
+            subscriberCount.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    private void send(SseEmitter emitter, OrderStatusResponse status) {
+        try {
+            emitter.send(SseEmitter.event().name(STATUS_EVENT).data(status, MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException | IllegalStateException e) {
+            log.debug("Status subscriber for orderId {} went away: {}", status.getOrderId(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+}
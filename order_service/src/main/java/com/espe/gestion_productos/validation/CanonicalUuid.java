@@ -0,0 +1,27 @@
+package com.espe.gestion_productos.validation;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The value must be a UUID in canonical lowercase form (8-4-4-4-12 hex digits).
+ * Null is valid; combine with @NotNull when the field is required.
+ */
+@Documented
+@Constraint(validatedBy = CanonicalUuidValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER, ElementType.TYPE_USE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CanonicalUuid {
+
+    String message() default "Invalid UUID format";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,33 @@
+package com.espe.gestion_productos.validation;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+// Same rule as ^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$, checked with a single
+// pass over the characters instead of a regex Matcher, so a valid id allocates nothing
+public class CanonicalUuidValidator implements ConstraintValidator<CanonicalUuid, CharSequence> {
+
+    private static final int LENGTH = 36;
+
+    @Override
+    public boolean isValid(CharSequence value, ConstraintValidatorContext context) {
+        return value == null || isCanonical(value);
+    }
+
+    public static boolean isCanonical(CharSequence value) {
+        if (value.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            char c = value.charAt(i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-') {
+                    return false;
+                }
+            } else if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
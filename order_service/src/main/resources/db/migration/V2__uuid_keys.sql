@@ -0,0 +1,21 @@
+-- Ids move from VARCHAR(36) (37 bytes per index entry) to native uuid (16 bytes).
+-- Rewrites the tables and their indexes; run it in a maintenance window on large databases.
+
+ALTER TABLE order_items DROP CONSTRAINT FKbioxgbv59vetrxe0ejfubep1w;
+
+ALTER TABLE orders
+    ALTER COLUMN order_id TYPE uuid USING order_id::uuid,
+    ALTER COLUMN customer_id TYPE uuid USING customer_id::uuid;
+
+ALTER TABLE order_items
+    ALTER COLUMN order_id TYPE uuid USING order_id::uuid,
+    ALTER COLUMN product_id TYPE uuid USING product_id::uuid;
+
+ALTER TABLE order_items ADD CONSTRAINT FKbioxgbv59vetrxe0ejfubep1w FOREIGN KEY (order_id) REFERENCES orders;
+
+-- The details lookup and the FK check on DELETE from orders join on this column
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+
+ALTER TABLE order_outbox ALTER COLUMN aggregate_id TYPE uuid USING aggregate_id::uuid;
+
+ALTER TABLE order_idempotency_keys ALTER COLUMN order_id TYPE uuid USING order_id::uuid;
@@ -0,0 +1,148 @@
+-- orders and order_items become range-partitioned by the order's creation month (UTC), and
+-- finished orders are moved by OrderArchiver into orders_archive, partitioned the same way.
+-- The existing rows are copied into the new tables: run it in a maintenance window on large databases.
+--
+-- Partition keys must be part of every unique constraint, so the primary keys become
+-- (order_id, created_at) and (id, order_created_at); order_items carries its order's created_at.
+
+ALTER TABLE order_items DROP CONSTRAINT FKbioxgbv59vetrxe0ejfubep1w;
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+ALTER TABLE orders_unpartitioned RENAME CONSTRAINT orders_pkey TO orders_unpartitioned_pkey;
+ALTER TABLE order_items RENAME TO order_items_unpartitioned;
+ALTER TABLE order_items_unpartitioned RENAME CONSTRAINT order_items_pkey TO order_items_unpartitioned_pkey;
+DROP INDEX idx_orders_customer_created;
+DROP INDEX idx_orders_status_created;
+DROP INDEX idx_order_items_order_id;
+
+CREATE TABLE orders (
+    order_id          uuid         NOT NULL,
+    customer_id       uuid         NOT NULL,
+    status            VARCHAR(20)  NOT NULL CHECK (status IN ('PENDING', 'CONFIRMED', 'CANCELLED')),
+    reason            TEXT,
+    payment_reference VARCHAR(255) NOT NULL,
+    street            VARCHAR(255),
+    city              VARCHAR(255),
+    state             VARCHAR(255),
+    zip_code          VARCHAR(255),
+    country           VARCHAR(255),
+    created_at        TIMESTAMP(6) WITH TIME ZONE DEFAULT now() NOT NULL,
+    PRIMARY KEY (order_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE order_items (
+    id               BIGINT                      NOT NULL,
+    order_id         uuid                        NOT NULL,
+    order_created_at TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    product_id       uuid                        NOT NULL,
+    quantity         INTEGER                     NOT NULL,
+    unit_price       FLOAT(53)                   NOT NULL,
+    PRIMARY KEY (id, order_created_at)
+) PARTITION BY RANGE (order_created_at);
+
+-- One row per archived order: the address and items are folded into a jsonb document,
+-- which TOAST compresses once a row exceeds the partitions' toast_tuple_target
+CREATE TABLE orders_archive (
+    order_id          uuid                        NOT NULL,
+    customer_id       uuid                        NOT NULL,
+    status            VARCHAR(20)                 NOT NULL,
+    reason            TEXT,
+    payment_reference VARCHAR(255)                NOT NULL,
+    created_at        TIMESTAMP(6) WITH TIME ZONE NOT NULL,
+    archived_at       TIMESTAMP(6) WITH TIME ZONE DEFAULT now() NOT NULL,
+    details           jsonb                       NOT NULL,
+    PRIMARY KEY (order_id, created_at)
+) PARTITION BY RANGE (created_at);
+
+-- lz4 compresses and decompresses several times faster than the default pglz, when the server has it
+DO $$
+BEGIN
+    ALTER TABLE orders_archive ALTER COLUMN details SET COMPRESSION lz4;
+EXCEPTION WHEN feature_not_supported THEN
+    RAISE NOTICE 'lz4 is not available, orders_archive.details keeps the default compression';
+END $$;
+
+-- Creates the monthly orders, order_items and orders_archive partitions covering [from_ts, to_ts].
+-- Called by OrderArchiver on every run to keep months ahead of the clock.
+CREATE FUNCTION create_order_partitions(from_ts TIMESTAMPTZ, to_ts TIMESTAMPTZ) RETURNS INTEGER AS $$
+DECLARE
+    month   TIMESTAMP := date_trunc('month', from_ts AT TIME ZONE 'UTC');
+    lower   TIMESTAMPTZ;
+    upper   TIMESTAMPTZ;
+    suffix  TEXT;
+    created INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('order_partitions'));
+    WHILE month <= to_ts AT TIME ZONE 'UTC' LOOP
+        suffix := to_char(month, 'YYYY_MM');
+        lower := month AT TIME ZONE 'UTC';
+        upper := (month + INTERVAL '1 month') AT TIME ZONE 'UTC';
+        IF to_regclass('orders_' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                    'orders_' || suffix, lower, upper);
+            EXECUTE format('CREATE TABLE %I PARTITION OF order_items FOR VALUES FROM (%L) TO (%L)',
+                    'order_items_' || suffix, lower, upper);
+            created := created + 1;
+        END IF;
+        IF to_regclass('orders_archive_' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF orders_archive FOR VALUES FROM (%L) TO (%L) '
+                    'WITH (toast_tuple_target = 128)', 'orders_archive_' || suffix, lower, upper);
+        END IF;
+        month := month + INTERVAL '1 month';
+    END LOOP;
+    RETURN created;
+END
+$$ LANGUAGE plpgsql;
+
+-- Drops the orders/order_items partitions for months that ended before before_ts once archival
+-- has emptied them, so old months stop costing index and catalog space.
+CREATE FUNCTION drop_empty_order_partitions(before_ts TIMESTAMPTZ) RETURNS INTEGER AS $$
+DECLARE
+    partition RECORD;
+    is_empty  BOOLEAN;
+    dropped   INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('order_partitions'));
+    FOR partition IN
+        SELECT substring(c.relname FROM '^orders_(\d{4}_\d{2})$') AS suffix
+        FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'orders'::regclass
+    LOOP
+        CONTINUE WHEN partition.suffix IS NULL
+            OR (to_date(partition.suffix, 'YYYY_MM') + INTERVAL '1 month') AT TIME ZONE 'UTC' > before_ts;
+        EXECUTE format('SELECT NOT EXISTS (SELECT 1 FROM %I) AND NOT EXISTS (SELECT 1 FROM %I)',
+                'orders_' || partition.suffix, 'order_items_' || partition.suffix) INTO is_empty;
+        IF is_empty THEN
+            -- Detaching drops the foreign key's per-partition references, which DROP alone refuses to do
+            EXECUTE format('DROP TABLE %I', 'order_items_' || partition.suffix);
+            EXECUTE format('ALTER TABLE orders DETACH PARTITION %I', 'orders_' || partition.suffix);
+            EXECUTE format('DROP TABLE %I', 'orders_' || partition.suffix);
+            dropped := dropped + 1;
+        END IF;
+    END LOOP;
+    RETURN dropped;
+END
+$$ LANGUAGE plpgsql;
+
+SELECT create_order_partitions(coalesce((SELECT min(created_at) FROM orders_unpartitioned), now()),
+                               now() + INTERVAL '3 months');
+
+INSERT INTO orders (order_id, customer_id, status, reason, payment_reference,
+                    street, city, state, zip_code, country, created_at)
+SELECT order_id, customer_id, status, reason, payment_reference,
+       street, city, state, zip_code, country, created_at
+FROM orders_unpartitioned;
+
+INSERT INTO order_items (id, order_id, order_created_at, product_id, quantity, unit_price)
+SELECT i.id, i.order_id, o.created_at, i.product_id, i.quantity, i.unit_price
+FROM order_items_unpartitioned i
+JOIN orders_unpartitioned o ON o.order_id = i.order_id;
+
+DROP TABLE order_items_unpartitioned;
+DROP TABLE orders_unpartitioned;
+
+-- Indexes and the foreign key are built once the data is in place
+CREATE INDEX idx_orders_customer_created ON orders (customer_id, created_at, order_id);
+CREATE INDEX idx_orders_status_created ON orders (status, created_at, order_id);
+CREATE INDEX idx_order_items_order_id ON order_items (order_id, order_created_at);
+ALTER TABLE order_items ADD CONSTRAINT fk_order_items_order
+    FOREIGN KEY (order_id, order_created_at) REFERENCES orders (order_id, created_at);
@@ -0,0 +1,11 @@
+-- Outbox events are IN_FLIGHT while their publisher confirm is outstanding, nacked or unroutable ones
+-- go back to PENDING with a backoff, and events that keep failing are parked as FAILED for inspection.
+ALTER TABLE order_outbox
+    ADD COLUMN status          VARCHAR(20)                 NOT NULL DEFAULT 'PENDING'
+        CHECK (status IN ('PENDING', 'IN_FLIGHT', 'FAILED')),
+    ADD COLUMN attempts        INTEGER                     NOT NULL DEFAULT 0,
+    ADD COLUMN next_attempt_at TIMESTAMP(6) WITH TIME ZONE NOT NULL DEFAULT now(),
+    ADD COLUMN last_error      TEXT;
+
+CREATE INDEX idx_order_outbox_pending ON order_outbox (id) WHERE status = 'PENDING';
+CREATE INDEX idx_order_outbox_in_flight ON order_outbox (claimed_at) WHERE status = 'IN_FLIGHT';
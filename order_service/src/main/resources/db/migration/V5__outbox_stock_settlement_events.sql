@@ -0,0 +1,5 @@
+-- The outbox also carries STOCK_COMMIT / STOCK_RELEASE, sent to inventory once an order is
+-- confirmed or cancelled so its reserved stock is kept or given back.
+ALTER TABLE order_outbox DROP CONSTRAINT order_outbox_event_type_check;
+ALTER TABLE order_outbox ADD CONSTRAINT order_outbox_event_type_check
+    CHECK (event_type IN ('ORDER_CREATED', 'STOCK_RESERVED', 'STOCK_REJECTED', 'STOCK_COMMIT', 'STOCK_RELEASE'));
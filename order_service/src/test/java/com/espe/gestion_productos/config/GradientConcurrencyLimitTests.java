@@ -0,0 +1,51 @@
+package com.espe.gestion_productos.config;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GradientConcurrencyLimitTests {
+
+	private static final long MILLIS = 1_000_000;
+
+	@Test
+	void growsWhileLatencyStaysFlat() {
+		GradientConcurrencyLimit limit = new GradientConcurrencyLimit(20, 10, 200, 1.5, 0.2);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(10 * MILLIS, limit.getLimit());
+		}
+		assertThat(limit.getLimit()).isEqualTo(200);
+	}
+
+	@Test
+	void shrinksWhenRequestsStartQueueing() {
+		GradientConcurrencyLimit limit = new GradientConcurrencyLimit(100, 10, 200, 1.5, 0.2);
+		for (int i = 0; i < 600; i++) {
+			limit.onSample(10 * MILLIS, 50);
+		}
+		for (int i = 0; i < 50; i++) {
+			limit.onSample(100 * MILLIS, limit.getLimit());
+		}
+		assertThat(limit.getLimit()).isLessThan(30);
+	}
+
+	@Test
+	void ignoresLatencyWhenFarBelowTheLimit() {
+		GradientConcurrencyLimit limit = new GradientConcurrencyLimit(100, 10, 200, 1.5, 0.2);
+		for (int i = 0; i < 100; i++) {
+			limit.onSample(10 * MILLIS, 5);
+		}
+		assertThat(limit.getLimit()).isEqualTo(100);
+	}
+
+	@Test
+	void failuresBackOffDownToTheMinimum() {
+		GradientConcurrencyLimit limit = new GradientConcurrencyLimit(100, 10, 200, 1.5, 0.2);
+		limit.onDropped();
+		assertThat(limit.getLimit()).isEqualTo(90);
+		for (int i = 0; i < 100; i++) {
+			limit.onDropped();
+		}
+		assertThat(limit.getLimit()).isEqualTo(10);
+	}
+}
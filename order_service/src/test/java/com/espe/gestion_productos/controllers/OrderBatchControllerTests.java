@@ -0,0 +1,77 @@
+package com.espe.gestion_productos.controllers;
+
+import com.espe.gestion_productos.dto.BatchCreateOrderResponse;
+import com.espe.gestion_productos.dto.BatchOrderResult;
+import com.espe.gestion_productos.enums.BatchItemStatus;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@SpringBootTest(properties = "order.outbox.relay.enabled=false")
+@Transactional
+class OrderBatchControllerTests {
+
+	// Well-formed JSON, but quantity cannot be bound to an int
+	private static final String BADLY_TYPED_ORDER = order("\"x\"");
+
+	@Autowired
+	private OrderController orderController;
+
+	@Test
+	void jsonBatchRejectsOnlyTheBadlyTypedEntry() {
+		String body = "[" + order("1") + "," + BADLY_TYPED_ORDER + "," + order("2") + "]";
+
+		BatchCreateOrderResponse response = orderController.createOrders(stream(body)).getBody();
+
+		assertStatuses(response);
+	}
+
+	@Test
+	void ndjsonBatchRejectsOnlyTheBadlyTypedEntry() throws IOException {
+		String body = order("1") + "\n" + BADLY_TYPED_ORDER + "\n" + order("2") + "\n";
+
+		BatchCreateOrderResponse response = orderController.createOrdersNdjson(stream(body)).getBody();
+
+		assertStatuses(response);
+	}
+
+	@Test
+	void jsonBodyThatIsNotAnArrayFailsTheRequest() {
+		assertThatThrownBy(() -> orderController.createOrders(stream(order("1"))))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+	private static void assertStatuses(BatchCreateOrderResponse response) {
+		assertThat(response.getTotal()).isEqualTo(3);
+		assertThat(response.getCreated()).isEqualTo(2);
+		assertThat(response.getRejected()).isEqualTo(1);
+		assertThat(response.getResults())
+				.extracting(BatchOrderResult::getIndex, BatchOrderResult::getStatus)
+				.containsExactly(
+						tuple(0, BatchItemStatus.CREATED),
+						tuple(1, BatchItemStatus.REJECTED),
+						tuple(2, BatchItemStatus.CREATED));
+	}
+
+	private static InputStream stream(String body) {
+		return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String order(String quantity) {
+		return """
+				{"customerId":"%s","items":[{"productId":"%s","quantity":%s,"unitPrice":9.99}],\
+				"shippingAddress":{"country":"EC","city":"Quito","street":"Av. Amazonas","zipCode":"170135","state":"Pichincha"},\
+				"paymentReference":"PAY-%s"}""".formatted(UUID.randomUUID(), UUID.randomUUID(), quantity, UUID.randomUUID());
+	}
+}
@@ -0,0 +1,106 @@
+package com.espe.gestion_productos.controllers;
+
+import com.espe.gestion_productos.dto.CreateOrderRequest;
+import com.espe.gestion_productos.dto.CreateOrderResponse;
+import com.espe.gestion_productos.dto.OrderItemRequest;
+import com.espe.gestion_productos.dto.ShippingAddressRequest;
+import com.espe.gestion_productos.services.IdempotencyService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+
+// Not @Transactional: the replay paths depend on what the first request committed
+@SpringBootTest(properties = "order.outbox.relay.enabled=false")
+class OrderIdempotencyTests {
+
+	private final UUID customerId = UUID.randomUUID();
+	private final String key = "test-" + UUID.randomUUID();
+
+	@Autowired
+	private OrderController orderController;
+
+	@MockitoSpyBean
+	private IdempotencyService idempotencyService;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@AfterEach
+	void deleteFixture() {
+		jdbcTemplate.update("DELETE FROM order_idempotency_keys WHERE idempotency_key = ?", key);
+		jdbcTemplate.update("DELETE FROM order_outbox WHERE aggregate_id IN (SELECT order_id FROM orders WHERE customer_id = ?)", customerId);
+		jdbcTemplate.update("DELETE FROM order_items WHERE order_id IN (SELECT order_id FROM orders WHERE customer_id = ?)", customerId);
+		jdbcTemplate.update("DELETE FROM orders WHERE customer_id = ?", customerId);
+	}
+
+	@Test
+	void retryWithSameKeyReplaysTheOriginalOrder() {
+		ResponseEntity<CreateOrderResponse> first = orderController.createOrder(newRequest(), key);
+		ResponseEntity<CreateOrderResponse> retry = orderController.createOrder(newRequest(), key);
+
+		assertThat(first.getHeaders().containsHeader("Idempotent-Replayed")).isFalse();
+		assertReplayOf(first.getBody(), retry);
+		assertSingleOrder(first.getBody().getOrderId());
+	}
+
+	@Test
+	void keyCommittedByConcurrentRequestIsReplayedAfterInsertConflict() {
+		ResponseEntity<CreateOrderResponse> winner = orderController.createOrder(newRequest(), key);
+		// The loser looked the key up before the winner committed, so it inserts the key too
+		doReturn(Optional.empty()).doCallRealMethod().when(idempotencyService).find(key);
+
+		ResponseEntity<CreateOrderResponse> loser = orderController.createOrder(newRequest(), key);
+
+		assertReplayOf(winner.getBody(), loser);
+		// The loser's order, outbox row and key were rolled back with the conflicting insert
+		assertSingleOrder(winner.getBody().getOrderId());
+	}
+
+	private static void assertReplayOf(CreateOrderResponse original, ResponseEntity<CreateOrderResponse> replay) {
+		assertThat(replay.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+		assertThat(replay.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+		assertThat(replay.getBody()).isEqualTo(original);
+	}
+
+	private void assertSingleOrder(String orderId) {
+		assertThat(jdbcTemplate.queryForList("SELECT order_id::text FROM orders WHERE customer_id = ?", String.class, customerId))
+				.containsExactly(orderId);
+		assertThat(jdbcTemplate.queryForObject(
+				"SELECT count(*) FROM order_outbox WHERE aggregate_id IN (SELECT order_id FROM orders WHERE customer_id = ?)",
+				Integer.class, customerId)).isEqualTo(1);
+		assertThat(jdbcTemplate.queryForList("SELECT order_id::text FROM order_idempotency_keys WHERE idempotency_key = ?", String.class, key))
+				.isEqualTo(List.of(orderId));
+	}
+
+	private CreateOrderRequest newRequest() {
+		return CreateOrderRequest.builder()
+				.customerId(customerId.toString())
+				.items(List.of(OrderItemRequest.builder()
+						.productId(UUID.randomUUID().toString())
+						.quantity(1)
+						.unitPrice(9.99)
+						.build()))
+				.shippingAddress(ShippingAddressRequest.builder()
+						.street("Av. Amazonas")
+						.city("Quito")
+						.state("Pichincha")
+						.zipCode("170135")
+						.country("EC")
+						.build())
+				.paymentReference("PAY-" + UUID.randomUUID())
+				.build();
+	}
+}
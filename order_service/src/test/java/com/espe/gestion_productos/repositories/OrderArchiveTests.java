@@ -0,0 +1,69 @@
+package com.espe.gestion_productos.repositories;
+
+import com.espe.gestion_productos.dto.OrderDetailsResponse;
+import com.espe.gestion_productos.enums.OrderStatus;
+import com.espe.gestion_productos.models.Order;
+import com.espe.gestion_productos.services.OrderService;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "order.outbox.relay.enabled=false")
+@Transactional
+class OrderArchiveTests {
+
+	// Far enough in the past that the month holds no other orders
+	private static final Instant LONG_AGO = Instant.parse("2001-03-14T10:00:00Z");
+	private static final Instant END_OF_MONTH = Instant.parse("2001-04-01T00:00:00Z");
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private OrderService orderService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void finishedOrdersMoveToArchiveAndStayReadable() {
+		orderRepository.createPartitions(LONG_AGO, LONG_AGO);
+		Order confirmed = persist(OrderStatus.CONFIRMED);
+		Order pending = persist(OrderStatus.PENDING);
+
+		// Other finished orders in the database may be archived too: only the fixture's are checked
+		Instant cutoff = LONG_AGO.plusSeconds(1);
+		orderRepository.archiveFinishedBefore(cutoff, 500);
+
+		assertThat(orderRepository.findArchivedDetails(confirmed.getOrderId())).isPresent();
+		assertThat(orderRepository.findArchivedDetails(pending.getOrderId())).isEmpty();
+		assertThat(orderRepository.findDetailsRows(confirmed.getOrderId())).isEmpty();
+		OrderDetailsResponse archived = orderService.getOrderDetails(confirmed.getOrderId().toString());
+		assertThat(archived.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+		assertThat(archived.getCustomerId()).isEqualTo(confirmed.getCustomerId().toString());
+		assertThat(archived.getItems()).hasSize(3)
+				.extracting(item -> item.getProductId())
+				.containsExactly(confirmed.getItems().stream().map(item -> item.getProductId().toString()).toArray(String[]::new));
+		assertThat(archived.getShippingAddress().getCity()).isEqualTo("Quito");
+
+		// The month still holds a PENDING order, so its partition stays
+		orderRepository.dropEmptyPartitions(END_OF_MONTH);
+		assertThat(orderRepository.findDetailsRows(pending.getOrderId())).hasSize(3);
+	}
+
+	private Order persist(OrderStatus status) {
+		Order order = OrderRepositoryStatementTests.newOrder(3);
+		order.setStatus(status);
+		order.setCreatedAt(LONG_AGO);
+		orderRepository.save(order);
+		entityManager.flush();
+		entityManager.clear();
+		return order;
+	}
+}
@@ -0,0 +1,107 @@
+package com.espe.gestion_productos.repositories;
+
+import com.espe.gestion_productos.dto.OrderDetailsRow;
+import com.espe.gestion_productos.models.Order;
+import com.espe.gestion_productos.models.OrderItem;
+import com.espe.gestion_productos.models.ShippingAddress;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {
+		"spring.jpa.properties.hibernate.generate_statistics=true",
+		"order.outbox.relay.enabled=false"
+})
+@Transactional
+class OrderRepositoryStatementTests {
+
+	private static final int ITEM_COUNT = 50;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+	}
+
+	@Test
+	void savingLargeOrderBatchesItemInserts() {
+		Order order = newOrder(ITEM_COUNT);
+
+		orderRepository.save(order);
+		entityManager.flush();
+
+		// one sequence fetch + one order insert + one batched item insert, instead of one insert per item
+		assertThat(statistics.getEntityInsertCount()).isEqualTo(ITEM_COUNT + 1);
+		assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	void findByIdLoadsItemsInSameStatement() {
+		UUID orderId = persistDetached(newOrder(5));
+
+		Order loaded = orderRepository.findById(orderId).orElseThrow();
+		assertThat(loaded.getItems()).hasSize(5);
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+	}
+
+	@Test
+	void detailsProjectionReadsOrderAndItemsWithoutEntities() {
+		UUID orderId = persistDetached(newOrder(5));
+
+		List<OrderDetailsRow> rows = orderRepository.findDetailsRows(orderId);
+		assertThat(rows).hasSize(5).allMatch(row -> row.getOrderId().equals(orderId.toString()));
+
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+		assertThat(statistics.getEntityLoadCount()).isZero();
+	}
+
+	// Saves the order, empties the persistence context and resets the counters
+	private UUID persistDetached(Order order) {
+		UUID orderId = orderRepository.save(order).getOrderId();
+		entityManager.flush();
+		entityManager.clear();
+		statistics.clear();
+		return orderId;
+	}
+
+	static Order newOrder(int itemCount) {
+		Order order = Order.builder()
+				.customerId(UUID.randomUUID())
+				.paymentReference("PAY-" + UUID.randomUUID())
+				.shippingAddress(ShippingAddress.builder()
+						.street("Av. Amazonas")
+						.city("Quito")
+						.state("Pichincha")
+						.zipCode("170135")
+						.country("EC")
+						.build())
+				.build();
+		for (int i = 0; i < itemCount; i++) {
+			order.addItem(OrderItem.builder()
+					.productId(UUID.randomUUID())
+					.quantity(i + 1)
+					.unitPrice(9.99)
+					.build());
+		}
+		return order;
+	}
+}
@@ -0,0 +1,47 @@
+package com.espe.gestion_productos.repositories;
+
+import com.espe.gestion_productos.dto.OrderStatusResponse;
+import com.espe.gestion_productos.enums.OrderStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = "order.outbox.relay.enabled=false")
+@Transactional
+class OrderStatusTransitionTests {
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Test
+	void staleResponseDoesNotOverwriteAppliedTransition() {
+		UUID orderId = orderRepository.save(OrderRepositoryStatementTests.newOrder(1)).getOrderId();
+		entityManager.flush();
+		entityManager.clear();
+
+		List<OrderRepository.TransitionedOrder> confirmed = orderRepository.transitionFromPending(
+				List.of(orderId), OrderStatus.CONFIRMED.name(), null);
+		// A StockRejected that arrives late, and a redelivered StockReserved
+		List<OrderRepository.TransitionedOrder> cancelled = orderRepository.transitionFromPending(
+				List.of(orderId), OrderStatus.CANCELLED.name(), "Insufficient stock");
+		List<OrderRepository.TransitionedOrder> redelivered = orderRepository.transitionFromPending(
+				List.of(orderId), OrderStatus.CONFIRMED.name(), null);
+
+		assertThat(confirmed).extracting(OrderRepository.TransitionedOrder::getOrderId).containsExactly(orderId);
+		assertThat(cancelled).isEmpty();
+		assertThat(redelivered).isEmpty();
+		OrderStatusResponse status = orderRepository.findStatusById(orderId).orElseThrow();
+		assertThat(status.getStatus()).isEqualTo(OrderStatus.CONFIRMED);
+		assertThat(status.getReason()).isNull();
+	}
+}
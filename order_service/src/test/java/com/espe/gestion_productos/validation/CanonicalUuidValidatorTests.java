@@ -0,0 +1,48 @@
+package com.espe.gestion_productos.validation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CanonicalUuidValidatorTests {
+
+	// The @Pattern regex CanonicalUuid replaced; both must accept and reject the same values
+	private static final Pattern CANONICAL_UUID =
+			Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
+
+	@Test
+	void acceptsRandomUuids() {
+		for (int i = 0; i < 1000; i++) {
+			assertThat(CanonicalUuidValidator.isCanonical(UUID.randomUUID().toString())).isTrue();
+		}
+	}
+
+	@Test
+	void matchesTheRegexItReplaced() {
+		String[] values = {
+				"123e4567-e89b-12d3-a456-426614174000",
+				"123E4567-E89B-12D3-A456-426614174000",
+				"123e4567e89b12d3a456426614174000",
+				"123e4567-e89b-12d3-a456-42661417400",
+				"123e4567-e89b-12d3-a456-4266141740000",
+				"123e4567-e89b-12d3-a456_426614174000",
+				"123e4567-e89b-12d3-a456-42661417400g",
+				"-23e4567-e89b-12d3-a456-426614174000",
+				"123e4567-e89b-12d3-a456-426614174000\n",
+				""
+		};
+		for (String value : values) {
+			assertThat(CanonicalUuidValidator.isCanonical(value))
+					.as(value)
+					.isEqualTo(CANONICAL_UUID.matcher(value).matches());
+		}
+	}
+
+	@Test
+	void nullIsLeftToNotNull() {
+		assertThat(new CanonicalUuidValidator().isValid(null, null)).isTrue();
+	}
+}